@@ -30,11 +30,13 @@ public class VoxyWorldGenV2Client implements ClientModInitializer {
         // reset connection state on disconnect
         net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
             com.ethan.voxyworldgenv2.network.NetworkState.setServerConnected(false);
+            com.ethan.voxyworldgenv2.network.NetworkClientHandler.onDisconnect();
         });
         
         // tick network stats
         net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents.END_CLIENT_TICK.register(client -> {
             com.ethan.voxyworldgenv2.network.NetworkState.tick();
+            com.ethan.voxyworldgenv2.network.NetworkClientHandler.tick(client);
         });
     }
 }
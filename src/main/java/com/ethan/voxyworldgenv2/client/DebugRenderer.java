@@ -67,6 +67,28 @@ public final class DebugRenderer {
             lineList.add("§7remaining: §e" + formatNumber(remaining) + " §8(" + eta + ")");
             lineList.add("§7active: §b" + manager.getActiveTaskCount());
             lineList.add("§7rate: §f" + String.format("%.1f", rate) + " c/s");
+            var netStats = com.ethan.voxyworldgenv2.network.NetworkHandler.getStats();
+            var sendQueue = mc.player != null ? com.ethan.voxyworldgenv2.core.PlayerTracker.getInstance().getSendQueue(mc.player.getUUID()) : null;
+            if (sendQueue != null) {
+                lineList.add("§7send queue: §b" + sendQueue.getDepth() + " §8(" + formatBytes((long) sendQueue.getByteRate()) + "/s, " + formatNumber(sendQueue.getDropped()) + " dropped)");
+                if (sendQueue.getRoundTripMs() > 0) {
+                    lineList.add("§7credit: §f" + sendQueue.getCredits() + " §8(rtt " + String.format("%.0f", sendQueue.getRoundTripMs()) + " ms, starved " + String.format("%.1f", sendQueue.getStarvedMillis() / 1000.0) + " s)");
+                }
+            }
+            lineList.add("§7encode: §f" + String.format("%.0f", netStats.getAverageEncodeMicros()) + " µs/c §8(" + String.format("%.1fx", netStats.getCompressionRatio()) + ")");
+            lineList.add("§7handoff: §f" + String.format("%.0f", stats.getAverageCompletionMicros()) + " µs/c §8(snapshot " + String.format("%.0f", netStats.getAverageSnapshotMicros()) + " µs, " + formatBytes((long) netStats.getAverageSnapshotBytes()) + ", ingest queue " + manager.getIngestBacklog() + ")");
+            var updates = com.ethan.voxyworldgenv2.core.ChunkUpdateTracker.getInstance();
+            if (updates.getBacklog() > 0 || updates.getLastSpikeMs() > 0) {
+                lineList.add("§7edits: §f" + formatNumber(updates.getBacklog()) + " dirty §8(last " + String.format("%.1f", updates.getLastSpikeMs()) + " ms, max " + String.format("%.1f", updates.getMaxSpikeMs()) + " ms)");
+            }
+            var lodStore = com.ethan.voxyworldgenv2.network.LODStore.getInstance();
+            if (lodStore.getReads() > 0) {
+                lineList.add("§7lod store: §f" + formatNumber(lodStore.getHits()) + "/" + formatNumber(lodStore.getReads()) + " §8(" + formatBytes((long) lodStore.getReadThroughput()) + "/s)");
+            }
+            var tellusTiles = com.ethan.voxyworldgenv2.integration.tellus.TellusTileCache.getInstance();
+            if (tellusTiles.getHits() + tellusTiles.getMisses() > 0) {
+                lineList.add("§7tellus tiles: §f" + String.format("%.0f%%", tellusTiles.getHitRatio() * 100) + " hit §8(" + formatBytes(tellusTiles.getTotalBytes()) + ")");
+            }
             lineList.add("§7voxy: " + (VoxyIntegration.isVoxyAvailable() ? "§aenabled" : "§cdisabled"));
         } else if (isVoxyServer) {
             // MULTIPLAYER
@@ -76,6 +98,8 @@ public final class DebugRenderer {
             lineList.add("§7rate: §f" + String.format("%.1f", netRate) + " c/s");
             lineList.add("§7bandwidth: §f" + formatBytes((long) bwRate) + "/s");
             lineList.add("§7received: §b" + formatNumber(com.ethan.voxyworldgenv2.network.NetworkState.getChunksReceived()) + " §8(" + formatBytes(com.ethan.voxyworldgenv2.network.NetworkState.getBytesReceived()) + ")");
+            lineList.add("§7decode: §f" + String.format("%.0f", com.ethan.voxyworldgenv2.network.NetworkState.getAverageDecodeMicros()) + " µs/c §8(" + String.format("%.1fx", com.ethan.voxyworldgenv2.network.NetworkState.getCompressionRatio()) + ")");
+            lineList.add("§7ingest: §f" + String.format("%.1f", com.ethan.voxyworldgenv2.network.NetworkState.getIngestLatencyMs()) + " ms §8(queue " + com.ethan.voxyworldgenv2.network.NetworkClientHandler.getDecodeQueueDepth() + ")");
             lineList.add("§7voxy: " + (VoxyIntegration.isVoxyAvailable() ? "§aenabled" : "§cdisabled"));
         } else {
             // MULTIPLAYER
@@ -8,7 +8,10 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
@@ -60,6 +63,7 @@ public final class ChunkGenerationManager {
                     // Only load if the server instance is valid
                     if (level.getServer() != null) {
                         ChunkPersistence.load(level, this.dimensionKey, this.completedChunks);
+                        ChunkPersistence.loadHashes(level, this.dimensionKey);
                         synchronized(this.completedChunks) {
                             for (long posLong : this.completedChunks) {
                                 int cx = net.minecraft.world.level.ChunkPos.getX(posLong);
@@ -98,6 +102,11 @@ public final class ChunkGenerationManager {
     // worker
     private Thread workerThread;
     private final AtomicBoolean workerRunning = new AtomicBoolean(false);
+    // voxy ingest and lod encoding for freshly generated chunks, fed snapshots from the server thread
+    private volatile ThreadPoolExecutor ingestPool;
+    // generation tasks are bounded by their throttle permit, everything else queued on the pool takes one of these
+    private static final int SIDE_TASK_LIMIT = 256;
+    private final Semaphore sideSlots = new Semaphore(SIDE_TASK_LIMIT);
     
     // c2me compatibility - queue ticket operations to process at safe time
     private record TicketOp(ServerLevel level, ChunkPos pos, boolean add) {}
@@ -138,6 +147,7 @@ public final class ChunkGenerationManager {
         this.pauseCheck = () -> false; 
         Config.load();
         this.throttle = new Semaphore(Config.DATA.maxActiveTasks);
+        startIngestPool();
         startWorker();
         VoxyWorldGenV2.LOGGER.info("voxy world gen initialized");
     }
@@ -145,15 +155,76 @@ public final class ChunkGenerationManager {
     public void shutdown() {
         running.set(false);
         stopWorker();
+        stopIngestPool();
         
         for (var entry : dimensionStates.entrySet()) {
             DimensionState state = entry.getValue();
             if (state.loaded) {
                 ChunkPersistence.save(state.level, entry.getKey(), state.completedChunks);
+                ChunkPersistence.saveHashes(state.level, entry.getKey());
             }
         }
         
+        var netStats = com.ethan.voxyworldgenv2.network.NetworkHandler.getStats();
+        if (netStats.getChunksEncoded() > 0) {
+            VoxyWorldGenV2.LOGGER.info("lod encode stats: {} chunks, {} µs/chunk, compression {}x",
+                netStats.getChunksEncoded(), String.format("%.0f", netStats.getAverageEncodeMicros()), String.format("%.2f", netStats.getCompressionRatio()));
+        }
+        if (netStats.getSnapshots() > 0) {
+            VoxyWorldGenV2.LOGGER.info("chunk snapshot stats: {} chunks, {} µs/chunk, {} KB/chunk",
+                netStats.getSnapshots(), String.format("%.0f", netStats.getAverageSnapshotMicros()), String.format("%.1f", netStats.getAverageSnapshotBytes() / 1024));
+        }
+        if (netStats.getResyncRegions() > 0) {
+            VoxyWorldGenV2.LOGGER.info("lod resync stats: {}/{} regions matched, {} chunks skipped",
+                netStats.getResyncRegionsMatched(), netStats.getResyncRegions(), netStats.getResyncChunksSkipped());
+        }
+        if (stats.getCompletions() > 0) {
+            VoxyWorldGenV2.LOGGER.info("generation completion stats: {} chunks, {} µs/chunk on the server thread",
+                stats.getCompletions(), String.format("%.1f", stats.getAverageCompletionMicros()));
+        }
+        if (com.ethan.voxyworldgenv2.integration.tellus.TellusSampler.getSampledChunks() > 0) {
+            VoxyWorldGenV2.LOGGER.info("tellus sample stats: {} chunks, {} source samples/chunk, {} KB allocated/chunk",
+                com.ethan.voxyworldgenv2.integration.tellus.TellusSampler.getSampledChunks(),
+                String.format("%.0f", com.ethan.voxyworldgenv2.integration.tellus.TellusSampler.getSampleCallsPerChunk()),
+                String.format("%.1f", com.ethan.voxyworldgenv2.integration.tellus.TellusIntegration.getAllocatedBytesPerChunk() / 1024));
+        }
+        var tiles = com.ethan.voxyworldgenv2.integration.tellus.TellusTileCache.getInstance();
+        if (tiles.getHits() + tiles.getMisses() > 0) {
+            VoxyWorldGenV2.LOGGER.info("tellus tile cache stats: {}% hit, {} tiles, {} MB",
+                String.format("%.1f", tiles.getHitRatio() * 100), tiles.size(), String.format("%.1f", tiles.getTotalBytes() / (1024.0 * 1024.0)));
+        }
+        tiles.clear();
+        com.ethan.voxyworldgenv2.integration.tellus.TellusSampler.resetStats();
+        com.ethan.voxyworldgenv2.integration.tellus.TellusIntegration.resetStats();
+        var requests = LODRequests.getInstance();
+        if (requests.getAccepted() + requests.getRejected() > 0) {
+            VoxyWorldGenV2.LOGGER.info("lod request stats: {} accepted, {} rejected", requests.getAccepted(), requests.getRejected());
+        }
+        requests.clear();
+        if (netStats.getChunksDownsampled() > 0) {
+            VoxyWorldGenV2.LOGGER.info("lod downsample stats: {} chunks, {}x smaller than full",
+                netStats.getChunksDownsampled(), String.format("%.2f", netStats.getDownsampleRatio()));
+        }
+        netStats.reset();
+        
+        var store = com.ethan.voxyworldgenv2.network.LODStore.getInstance();
+        if (store.getReads() > 0) {
+            VoxyWorldGenV2.LOGGER.info("lod store stats: {}/{} reads hit, {} writes, {} MB/s read",
+                store.getHits(), store.getReads(), store.getWrites(), String.format("%.1f", store.getReadThroughput() / (1024 * 1024)));
+        }
+        store.close();
+        store.resetStats();
+        
+        var updates = ChunkUpdateTracker.getInstance();
+        if (updates.getCapturedUpdates() > 0) {
+            VoxyWorldGenV2.LOGGER.info("block update stats: {} captured, {} chunks rebroadcast, {} nobody had skipped, {} sections re-ingested locally, worst tick {} ms",
+                updates.getCapturedUpdates(), updates.getRebroadcastChunks(), updates.getSkippedChunks(), updates.getReingestedSections(), String.format("%.1f", updates.getMaxSpikeMs()));
+        }
+        
         dimensionStates.clear();
+        ChunkUpdateTracker.getInstance().clear();
+        ChunkHashStore.getInstance().clear();
+        com.ethan.voxyworldgenv2.network.LODPayloadCache.getInstance().clear();
         server = null;
         stats.reset();
         activeTaskCount.set(0);
@@ -178,6 +249,34 @@ public final class ChunkGenerationManager {
         }
     }
 
+    // never runs work on the caller: generation tasks hold their throttle permit while queued, so a slow voxy backs up
+    // into the throttle, and sync and downsample tasks are capped by sideSlots and turned away once those run out
+    private void startIngestPool() {
+        int threads = Config.DATA.ingestThreads > 0 ? Config.DATA.ingestThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+        AtomicInteger index = new AtomicInteger();
+        ingestPool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "voxy-lod-ingest-" + index.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.NORM_PRIORITY - 1);
+                    return t;
+                });
+    }
+
+    private void stopIngestPool() {
+        ThreadPoolExecutor pool = ingestPool;
+        ingestPool = null;
+        if (pool == null) return;
+        pool.shutdown();
+        try {
+            // let queued chunks reach voxy and the store before those are closed
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private void workerLoop() {
         while (workerRunning.get() && running.get()) {
             try {
@@ -205,8 +304,22 @@ public final class ChunkGenerationManager {
                     DimensionState ds = getOrSetupState(playerLevel);
                     
                     // 2. Calculate radius (Tellus support)
-                    int radius = ds.tellusActive ? Math.max(Config.DATA.generationRadius, 128) : Config.DATA.generationRadius;
+                    int radius = getRadius(ds);
                     
+                    var synced = PlayerTracker.getInstance().getSyncedChunks(player.getUUID());
+                    var queue = PlayerTracker.getInstance().getSendQueue(player.getUUID());
+                    // hold off sync while the player's outbound queue is still working through a backlog
+                    boolean backlogged = queue != null && queue.getDepth() > Config.DATA.maxQueuedPayloadsPerPlayer / 2;
+                    // and until the client's hash summary has told us what it already has
+                    backlogged |= PlayerTracker.getInstance().isAwaitingResync(player.getUUID());
+                    var requests = LODRequests.getInstance().get(player.getUUID(), ds.dimensionKey);
+
+                    // urgent client requests go ahead of the player's own surroundings
+                    if (serveRequests(player, ds, requests, true, synced, backlogged)) {
+                        workFound = true;
+                        continue;
+                    }
+
                     // 3. Search for work around the player
                     List<ChunkPos> batch = ds.distanceGraph.findWork(player.chunkPosition(), radius, ds.trackedBatches);
                     
@@ -215,16 +328,21 @@ public final class ChunkGenerationManager {
                         processBatch(ds, batch);
                     } else {
                         // 4. If no generation needed, check if we need to sync existing LODs
-                        var synced = PlayerTracker.getInstance().getSyncedChunks(player.getUUID());
-                        if (synced != null) {
+                        boolean syncing = false;
+                        if (synced != null && !backlogged) {
                             List<ChunkPos> syncBatch = new ArrayList<>();
                             ds.distanceGraph.collectCompletedInRange(player.chunkPosition(), radius, synced, syncBatch, 64);
                             
                             if (!syncBatch.isEmpty()) {
                                 workFound = true;
+                                syncing = true;
                                 dispatchSyncBatch(player, ds, syncBatch);
                             }
                         }
+                        // 5. background requests once the player's own area is done
+                        if (!syncing && serveRequests(player, ds, requests, false, synced, backlogged)) {
+                            workFound = true;
+                        }
                     }
                 }
 
@@ -245,9 +363,48 @@ public final class ChunkGenerationManager {
         }
     }
 
+    // generation first, then sync, for the first request of the given urgency that still has work
+    private boolean serveRequests(ServerPlayer player, DimensionState ds, List<LODRequests.Request> requests, boolean urgent, SyncedChunkMap synced, boolean backlogged) {
+        for (LODRequests.Request request : requests) {
+            if ((request.priority() > 0) != urgent) continue;
+
+            List<ChunkPos> batch = ds.distanceGraph.findWork(request.center(), request.radius(), ds.trackedBatches);
+            if (batch != null && !batch.isEmpty()) {
+                processBatch(ds, batch);
+                return true;
+            }
+            if (synced == null || backlogged) continue;
+
+            List<ChunkPos> syncBatch = new ArrayList<>();
+            ds.distanceGraph.collectCompletedInRange(request.center(), request.radius(), synced, syncBatch, 64);
+            if (!syncBatch.isEmpty()) {
+                dispatchSyncBatch(player, ds, syncBatch);
+                return true;
+            }
+            // batches still generating are tracked, so an empty pass only means done when none of its own are in flight
+            if (!hasBatchInFlight(ds, request)) LODRequests.getInstance().complete(player.getUUID(), request);
+        }
+        return false;
+    }
+
+    private static boolean hasBatchInFlight(DimensionState ds, LODRequests.Request request) {
+        long limit = (long) request.radius() * request.radius();
+        for (long batchKey : ds.trackedBatches) {
+            // nearest chunk of the 4x4 batch to the request center
+            int minX = ChunkPos.getX(batchKey) << 2;
+            int minZ = ChunkPos.getZ(batchKey) << 2;
+            long dx = Math.max(0, Math.max(minX - request.center().x, request.center().x - (minX + 3)));
+            long dz = Math.max(0, Math.max(minZ - request.center().z, request.center().z - (minZ + 3)));
+            if (dx * dx + dz * dz <= limit) return true;
+        }
+        return false;
+    }
+
     private void processBatch(DimensionState ds, List<ChunkPos> batch) {
         long batchKey = DistanceGraph.getBatchKey(batch.get(0).x, batch.get(0).z);
         ds.batchCounters.put(batchKey, new AtomicInteger(batch.size()));
+        // tellus chunks are collected and generated together so they can share one sampled grid
+        List<ChunkPos> tellusBatch = ds.tellusActive && Config.DATA.tellusBatchSampling ? new ArrayList<>(batch.size()) : null;
 
         for (ChunkPos pos : batch) {
             if (!workerRunning.get()) break;
@@ -264,7 +421,9 @@ public final class ChunkGenerationManager {
                         activeTaskCount.incrementAndGet();
                         stats.incrementQueued();
 
-                        if (ds.tellusActive) {
+                        if (tellusBatch != null) {
+                            tellusBatch.add(pos);
+                        } else if (ds.tellusActive) {
                             TellusIntegration.enqueueGenerate(ds.level, pos, () -> {
                                 onSuccess(ds, pos);
                                 completeTask(ds, pos);
@@ -276,24 +435,19 @@ public final class ChunkGenerationManager {
                                 processPendingTickets();
                                 ((ServerChunkCacheMixin) ds.level.getChunkSource()).invokeGetChunkFutureMainThread(pos.x, pos.z, net.minecraft.world.level.chunk.status.ChunkStatus.FULL, true)
                                     .whenCompleteAsync((result, throwable) -> {
-                                    
+                                    long start = System.nanoTime();
+                                    boolean handedOff = false;
                                     if (throwable == null && result != null && result.isSuccess() && result.orElse(null) instanceof LevelChunk chunk) {
                                         // 1. Verification: is the chunk in the expected dimension?
                                         if (chunk.getLevel().dimension().equals(ds.dimensionKey)) {
                                             onSuccess(ds, pos);
-                                            
-                                            // 2. Local ingestion for Voxy
-                                            VoxyIntegration.ingestChunk(chunk);
-                                            
-                                            // 3. FILTERED SEND: Only to players in this dimension
-                                            for (ServerPlayer player : server.getPlayerList().getPlayers()) {
-                                                if (player.level().dimension().equals(ds.dimensionKey)) {
-                                                    com.ethan.voxyworldgenv2.network.NetworkHandler.sendLODData(player, chunk);
-                                                }
-                                            }
+                                            // 2. ingest and send happen on the pool, the permit is released there
+                                            handedOff = handOff(ds, pos, chunk);
                                         }
                                     }
-                                        cleanupTask(ds.level, pos);
+                                        releaseTicket(ds.level, pos);
+                                        if (!handedOff) completeTask(ds, pos);
+                                        stats.recordCompletion(System.nanoTime() - start);
                                     }, server);
                             });
                         }
@@ -303,23 +457,163 @@ public final class ChunkGenerationManager {
                 }
             } catch (InterruptedException ignored) {}
         }
+
+        if (tellusBatch != null && !tellusBatch.isEmpty()) {
+            TellusIntegration.enqueueGenerateBatch(ds.level, tellusBatch, pos -> {
+                onSuccess(ds, pos);
+                completeTask(ds, pos);
+            });
+        }
+    }
+
+    // snapshots the chunk so voxy ingest and encoding can run on the ingest pool, true if the pool now owns the permit
+    private boolean handOff(DimensionState ds, ChunkPos pos, LevelChunk chunk) {
+        // encode once, then fan out to players close enough to keep it queued
+        List<UUID> recipients = new ArrayList<>();
+        for (ServerPlayer player : PlayerSpatialIndex.getInstance().getPlayersNear(ds.dimensionKey, pos, getRadius(ds) + 16)) {
+            recipients.add(player.getUUID());
+        }
+        // plus anyone who asked for this area from afar
+        for (UUID requester : LODRequests.getInstance().getRequesters(ds.dimensionKey, pos.toLong())) {
+            if (!recipients.contains(requester)) recipients.add(requester);
+        }
+
+        boolean raw = VoxyIntegration.isRawIngestAvailable();
+        if (!raw) {
+            // the plain ingest call wants the live chunk, which only the server thread may read
+            VoxyIntegration.ingestChunk(chunk);
+            if (recipients.isEmpty()) return false;
+        }
+
+        if (!submitChunk(chunk, recipients, raw, () -> completeTask(ds, pos))) {
+            // shutting down, voxy still gets the chunk but there is nobody left to send to
+            if (raw) VoxyIntegration.ingestChunk(chunk);
+            return false;
+        }
+        return true;
+    }
+
+    // snapshots the chunk, then voxy ingest (when asked) and encoding run on the ingest pool
+    // the payload goes back to the server thread for the send queues
+    // false if the pool is gone, or for sync work (no onDone, so no permit) when it is saturated
+    private boolean submitChunk(LevelChunk chunk, List<UUID> recipients, boolean ingest, Runnable onDone) {
+        ThreadPoolExecutor pool = ingestPool;
+        MinecraftServer srv = server;
+        if (pool == null || pool.isShutdown() || srv == null) return false;
+        boolean side = onDone == null;
+        if (side && !sideSlots.tryAcquire()) return false;
+
+        ChunkSnapshot snapshot = ChunkSnapshot.of(chunk);
+        Runnable task = () -> {
+            try {
+                if (ingest) VoxyIntegration.rawIngest(snapshot);
+                var payload = recipients.isEmpty() ? null : com.ethan.voxyworldgenv2.network.NetworkHandler.getOrEncode(snapshot);
+                if (payload != null) {
+                    srv.execute(() -> {
+                        // edited while this was queued, the copy is older than the delta the edit already sent
+                        if (com.ethan.voxyworldgenv2.network.NetworkHandler.isStale(snapshot)) {
+                            unmarkSynced(snapshot, recipients);
+                            return;
+                        }
+                        for (UUID uuid : recipients) {
+                            ServerPlayer player = srv.getPlayerList().getPlayer(uuid);
+                            if (player != null) com.ethan.voxyworldgenv2.network.NetworkHandler.sendLODData(player, payload);
+                        }
+                    });
+                } else if (!recipients.isEmpty() && com.ethan.voxyworldgenv2.network.NetworkHandler.isStale(snapshot)) {
+                    // dropped, sync picks the chunk up again and snapshots the edited version
+                    srv.execute(() -> unmarkSynced(snapshot, recipients));
+                }
+            } finally {
+                if (side) sideSlots.release();
+                if (onDone != null) onDone.run();
+            }
+        };
+        try {
+            pool.execute(task);
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            // shut down between the check and here
+            if (side) sideSlots.release();
+            return false;
+        }
+        return true;
+    }
+
+    private static void unmarkSynced(ChunkSnapshot snapshot, List<UUID> recipients) {
+        for (UUID uuid : recipients) {
+            SyncedChunkMap synced = PlayerTracker.getInstance().getSyncedChunks(uuid);
+            if (synced != null) synced.remove(snapshot.level().dimension(), snapshot.pos().toLong());
+        }
     }
 
     private void dispatchSyncBatch(ServerPlayer player, DimensionState ds, List<ChunkPos> syncBatch) {
         final UUID uuid = player.getUUID();
-        final List<ChunkPos> toSync = new ArrayList<>(syncBatch);
+        final SyncedChunkMap synced = PlayerTracker.getInstance().getSyncedChunks(uuid);
+        
+        // read stored lods here on the worker, only chunks missing from the store need the server thread
+        final List<com.ethan.voxyworldgenv2.network.NetworkHandler.LODDataPayload> stored = new ArrayList<>();
+        final List<ChunkPos> missing = new ArrayList<>();
+        for (ChunkPos pos : syncBatch) {
+            var payload = com.ethan.voxyworldgenv2.network.NetworkHandler.getStored(ds.level, pos);
+            // downsample far chunks here as well, the server thread only queues them
+            if (payload != null) payload = com.ethan.voxyworldgenv2.network.NetworkHandler.forDistance(player, ds.level, payload);
+            if (payload != null) {
+                stored.add(payload);
+            } else {
+                missing.add(pos);
+            }
+            // mark now so the next worker pass does not pick the same chunks again
+            if (synced != null) synced.add(pos.toLong(), payload != null ? payload.scale() : 0);
+        }
+        
         server.execute(() -> {
             ServerPlayer p = server.getPlayerList().getPlayer(uuid);
-            if (p != null) {
-                for (ChunkPos pos : toSync) {
-                    LevelChunk c = ds.level.getChunkSource().getChunk(pos.x, pos.z, false);
-                    if (c != null) {
-                        com.ethan.voxyworldgenv2.network.NetworkHandler.sendLODData(p, c);
+            if (p == null) return;
+            for (var payload : stored) {
+                com.ethan.voxyworldgenv2.network.NetworkHandler.sendLODData(p, payload);
+            }
+            for (ChunkPos pos : missing) {
+                LevelChunk c = ds.level.getChunkSource().getChunk(pos.x, pos.z, false);
+                if (c != null) {
+                    // loaded but never stored, encode it on the pool instead of here
+                    // a busy or closed pool leaves it for a later sync pass
+                    if (!submitChunk(c, List.of(uuid), false, null) && synced != null) {
+                        synced.remove(ds.dimensionKey, pos.toLong());
                     }
+                } else if (!ds.tellusActive) {
+                    loadForSync(ds, pos, uuid, synced);
                 }
+                // tellus chunks only ever existed in voxy, there is nothing to send for them
             }
         });
     }
+    
+    // generated before the store existed, load it once so it gets encoded and stored
+    private void loadForSync(DimensionState ds, ChunkPos pos, UUID uuid, SyncedChunkMap synced) {
+        if (!throttle.tryAcquire()) {
+            // out of permits, leave it for a later pass
+            if (synced != null) synced.remove(ds.dimensionKey, pos.toLong());
+            return;
+        }
+        activeTaskCount.incrementAndGet();
+        queueTicketAdd(ds.level, pos);
+        processPendingTickets();
+        ((ServerChunkCacheMixin) ds.level.getChunkSource()).invokeGetChunkFutureMainThread(pos.x, pos.z, ChunkStatus.FULL, true)
+            .whenCompleteAsync((result, throwable) -> {
+                ServerPlayer p = server.getPlayerList().getPlayer(uuid);
+                if (p != null && throwable == null && result != null && result.isSuccess() && result.orElse(null) instanceof LevelChunk chunk) {
+                    // the snapshot outlives the ticket, so the permit can go back right away
+                    if (!submitChunk(chunk, List.of(uuid), false, null) && synced != null) {
+                        synced.remove(ds.dimensionKey, pos.toLong());
+                    }
+                } else if (synced != null) {
+                    synced.remove(ds.dimensionKey, pos.toLong());
+                }
+                queueTicketRemove(ds.level, pos);
+                activeTaskCount.decrementAndGet();
+                throttle.release();
+            }, server);
+    }
 
     public void tick() {
         if (!running.get() || server == null) return;
@@ -335,16 +629,27 @@ public final class ChunkGenerationManager {
         tpsMonitor.tick();
         stats.tick();
         checkPlayerMovement();
+        flushSendQueues();
         
         // broadcast changes for all active dimensions
         Set<ServerLevel> activeLevels = new HashSet<>();
         for (ServerPlayer player : PlayerTracker.getInstance().getPlayers()) {
             activeLevels.add((ServerLevel) player.level());
         }
-        for (ServerLevel level : activeLevels) {
-            ChunkUpdateTracker.getInstance().processDirty(level);
+        ChunkUpdateTracker.getInstance().processDirty(activeLevels);
+    }
+    
+    private void flushSendQueues() {
+        for (ServerPlayer player : PlayerTracker.getInstance().getPlayers()) {
+            DimensionState state = getOrSetupState((ServerLevel) player.level());
+            // small margin so entries at the edge are not dropped by jitter in player movement
+            com.ethan.voxyworldgenv2.network.NetworkHandler.flushQueue(player, getRadius(state) + 16);
         }
     }
+
+    private int getRadius(DimensionState state) {
+        return state.tellusActive ? Math.max(Config.DATA.generationRadius, 128) : Config.DATA.generationRadius;
+    }
     
     private void checkPlayerMovement() {
         var players = PlayerTracker.getInstance().getPlayers();
@@ -353,15 +658,22 @@ public final class ChunkGenerationManager {
         boolean shouldRescan = false;
         for (ServerPlayer player : players) {
             // Ensure the dimension the player is in is initialized
-            getOrSetupState((ServerLevel) player.level()); 
+            DimensionState state = getOrSetupState((ServerLevel) player.level()); 
+            PlayerSpatialIndex.getInstance().update(player);
             
             ChunkPos currentPos = player.chunkPosition();
             UUID uuid = player.getUUID();
             ChunkPos lastPos = lastPlayerPositions.get(uuid);
+            SyncedChunkMap synced = PlayerTracker.getInstance().getSyncedChunks(uuid);
+            if (synced != null && synced.setDimension(state.dimensionKey)) PlayerTracker.getInstance().openResync(uuid);
             
             if (lastPos == null || distSq(lastPos, currentPos) >= 4) {
                 lastPlayerPositions.put(uuid, currentPos);
                 shouldRescan = true;
+                // drop sync state for regions the player left behind, with a region of slack against back-and-forth
+                // areas the player asked for stay, or their chunks would be sent over and over
+                if (synced != null) synced.evictOutside(currentPos, getRadius(state) + (1 << SyncedChunkMap.REGION_SHIFT),
+                        LODRequests.getInstance().get(uuid, state.dimensionKey));
             }
         }
 
@@ -381,6 +693,7 @@ public final class ChunkGenerationManager {
             DimensionState oldState = dimensionStates.get(currentDimensionKey);
             if (oldState != null) {
                 ChunkPersistence.save(currentLevel, currentDimensionKey, oldState.completedChunks);
+                ChunkPersistence.saveHashes(currentLevel, currentDimensionKey);
             }
         }
         
@@ -411,7 +724,7 @@ public final class ChunkGenerationManager {
         java.util.Map<DimensionState, Integer> maxCounts = new java.util.HashMap<>();
         for (ServerPlayer player : players) {
             DimensionState state = getOrSetupState((ServerLevel) player.level());
-            int radius = state.tellusActive ? Math.max(Config.DATA.generationRadius, 128) : Config.DATA.generationRadius;
+            int radius = getRadius(state);
             int missing = state.distanceGraph.countMissingInRange(player.chunkPosition(), radius);
             maxCounts.merge(state, missing, Math::max);
         }
@@ -453,11 +766,9 @@ public final class ChunkGenerationManager {
         pendingTicketOps.add(new TicketOp(level, pos, false));
     }
     
-    private void cleanupTask(ServerLevel level, ChunkPos pos) {
+    private void releaseTicket(ServerLevel level, ChunkPos pos) {
         queueTicketRemove(level, pos);
         ((MinecraftServerAccess) server).setEmptyTicks(0);
-        DimensionState state = dimensionStates.get(level.dimension());
-        if (state != null) completeTask(state, pos);
     }
 
     private void onSuccess(DimensionState state, ChunkPos pos) {
@@ -508,6 +819,30 @@ public final class ChunkGenerationManager {
     }
     public boolean isThrottled() { return tpsMonitor.isThrottled(); }
     public int getQueueSize() { return 0; }
+    // off-thread work for the server thread, false when the pool is gone or saturated and the caller has to back off
+    public boolean runOnIngestPool(Runnable task) {
+        ThreadPoolExecutor pool = ingestPool;
+        if (pool == null || pool.isShutdown() || !sideSlots.tryAcquire()) return false;
+        try {
+            pool.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    sideSlots.release();
+                }
+            });
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            sideSlots.release();
+            return false;
+        }
+        return true;
+    }
+
+    // generated chunks waiting on the ingest pool
+    public int getIngestBacklog() {
+        ThreadPoolExecutor pool = ingestPool;
+        return pool == null ? 0 : pool.getQueue().size() + pool.getActiveCount();
+    }
     
     public void setPauseCheck(java.util.function.BooleanSupplier check) {
         this.pauseCheck = check;
@@ -0,0 +1,95 @@
+package com.ethan.voxyworldgenv2.core;
+
+import com.ethan.voxyworldgenv2.network.LODHashes;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMaps;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// content hash of the last full lod encoded for each chunk, 0 = unknown
+public class ChunkHashStore {
+    private static final ChunkHashStore INSTANCE = new ChunkHashStore();
+    private final Map<ResourceKey<Level>, Long2LongOpenHashMap> hashes = new ConcurrentHashMap<>();
+
+    private ChunkHashStore() {}
+
+    public static ChunkHashStore getInstance() {
+        return INSTANCE;
+    }
+
+    private Long2LongOpenHashMap forDimension(ResourceKey<Level> dimension) {
+        return hashes.computeIfAbsent(dimension, k -> new Long2LongOpenHashMap());
+    }
+
+    public void put(ResourceKey<Level> dimension, long pos, long hash) {
+        Long2LongOpenHashMap map = forDimension(dimension);
+        synchronized (map) {
+            map.put(pos, hash);
+        }
+    }
+
+    // content changed without a fresh full encode, so any client copy is suspect
+    public void invalidate(ResourceKey<Level> dimension, long pos) {
+        Long2LongOpenHashMap map = hashes.get(dimension);
+        if (map == null) return;
+        synchronized (map) {
+            map.remove(pos);
+        }
+    }
+
+    // compares a client region digest against ours and marks every chunk in it synced on a match
+    public int matchRegion(ResourceKey<Level> dimension, long region, long digest, int count, SyncedChunkMap synced) {
+        Long2LongOpenHashMap map = hashes.get(dimension);
+        if (map == null || count <= 0) return 0;
+
+        int baseX = ChunkPos.getX(region) << LODHashes.REGION_SHIFT;
+        int baseZ = ChunkPos.getZ(region) << LODHashes.REGION_SHIFT;
+        long[] matched = new long[LODHashes.REGION_SIZE * LODHashes.REGION_SIZE];
+        int found = 0;
+        long ours = 0;
+        synchronized (map) {
+            for (int dz = 0; dz < LODHashes.REGION_SIZE; dz++) {
+                for (int dx = 0; dx < LODHashes.REGION_SIZE; dx++) {
+                    long pos = ChunkPos.asLong(baseX + dx, baseZ + dz);
+                    long hash = map.get(pos);
+                    if (hash == 0) continue;
+                    ours += LODHashes.chunkDigest(pos, hash);
+                    matched[found++] = pos;
+                }
+            }
+        }
+        if (found != count || ours != digest) return 0;
+
+        for (int i = 0; i < found; i++) {
+            synced.add(matched[i]);
+        }
+        return found;
+    }
+
+    public void load(ResourceKey<Level> dimension, Long2LongMap loaded) {
+        Long2LongOpenHashMap map = forDimension(dimension);
+        synchronized (map) {
+            // hashes recorded since startup are newer than what is on disk
+            for (Long2LongMap.Entry entry : Long2LongMaps.fastIterable(loaded)) {
+                map.putIfAbsent(entry.getLongKey(), entry.getLongValue());
+            }
+        }
+    }
+
+    public Long2LongOpenHashMap snapshot(ResourceKey<Level> dimension) {
+        Long2LongOpenHashMap map = hashes.get(dimension);
+        if (map == null) return new Long2LongOpenHashMap();
+        synchronized (map) {
+            return new Long2LongOpenHashMap(map);
+        }
+    }
+
+    public void clear() {
+        hashes.clear();
+    }
+}
@@ -1,6 +1,9 @@
 package com.ethan.voxyworldgenv2.core;
 
 import com.ethan.voxyworldgenv2.VoxyWorldGenV2;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMaps;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.level.Level;
@@ -53,7 +56,45 @@ public class ChunkPersistence {
         }
     }
 
-    private static String getDimensionId(ResourceKey<Level> dimKey) {
+    public static void saveHashes(ServerLevel level, ResourceKey<Level> dimKey) {
+        if (level == null || dimKey == null) return;
+        
+        try {
+            Path savePath = level.getServer().getWorldPath(LevelResource.ROOT).resolve("voxy_hash_" + getDimensionId(dimKey) + ".bin");
+            Long2LongOpenHashMap hashes = ChunkHashStore.getInstance().snapshot(dimKey);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(savePath)))) {
+                out.writeInt(hashes.size());
+                for (Long2LongMap.Entry entry : Long2LongMaps.fastIterable(hashes)) {
+                    out.writeLong(entry.getLongKey());
+                    out.writeLong(entry.getLongValue());
+                }
+            }
+        } catch (Exception e) {
+            VoxyWorldGenV2.LOGGER.error("failed to save chunk hash cache", e);
+        }
+    }
+    
+    public static void loadHashes(ServerLevel level, ResourceKey<Level> dimKey) {
+        if (level == null || dimKey == null) return;
+        
+        try {
+            Path savePath = level.getServer().getWorldPath(LevelResource.ROOT).resolve("voxy_hash_" + getDimensionId(dimKey) + ".bin");
+            if (Files.exists(savePath)) {
+                Long2LongOpenHashMap hashes = new Long2LongOpenHashMap();
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(savePath)))) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        hashes.put(in.readLong(), in.readLong());
+                    }
+                }
+                ChunkHashStore.getInstance().load(dimKey, hashes);
+            }
+        } catch (Exception e) {
+            VoxyWorldGenV2.LOGGER.error("failed to load chunk hash cache", e);
+        }
+    }
+
+    public static String getDimensionId(ResourceKey<Level> dimKey) {
         String rawPath = String.valueOf(dimKey);
         if (rawPath.contains("/")) {
             rawPath = rawPath.substring(rawPath.lastIndexOf("/") + 1);
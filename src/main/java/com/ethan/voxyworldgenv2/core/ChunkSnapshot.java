@@ -0,0 +1,84 @@
+package com.ethan.voxyworldgenv2.core;
+
+import com.ethan.voxyworldgenv2.network.NetworkHandler;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.LightLayer;
+import net.minecraft.world.level.chunk.DataLayer;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+
+// copies of a chunk's non-empty sections and their light, taken in one pass on the server thread
+// nothing here is written after construction, so encode, voxy ingest, store writes and hashing can all read it at once
+// air-only sections are left null, the same ones a full lod skips
+public final class ChunkSnapshot {
+    private final ServerLevel level;
+    private final ChunkPos pos;
+    private final int minSectionY;
+    // content version the copy was taken at, an edit after that makes it stale
+    private final long version;
+    private final LevelChunkSection[] sections;
+    private final DataLayer[] blockLight;
+    private final DataLayer[] skyLight;
+    private final long retainedBytes;
+
+    private ChunkSnapshot(ServerLevel level, ChunkPos pos, int minSectionY, long version, LevelChunkSection[] sections, DataLayer[] blockLight, DataLayer[] skyLight, long retainedBytes) {
+        this.level = level;
+        this.pos = pos;
+        this.minSectionY = minSectionY;
+        this.version = version;
+        this.sections = sections;
+        this.blockLight = blockLight;
+        this.skyLight = skyLight;
+        this.retainedBytes = retainedBytes;
+    }
+
+    // server thread only, reads the live chunk and light engine
+    public static ChunkSnapshot of(LevelChunk chunk) {
+        long start = System.nanoTime();
+        ServerLevel level = (ServerLevel) chunk.getLevel();
+        ChunkPos pos = chunk.getPos();
+        int minY = chunk.getMinSectionY();
+        long version = ChunkUpdateTracker.getInstance().getVersion(level.dimension(), pos.toLong());
+        LevelChunkSection[] live = chunk.getSections();
+        var blockEngine = level.getLightEngine().getLayerListener(LightLayer.BLOCK);
+        var skyEngine = level.getLightEngine().getLayerListener(LightLayer.SKY);
+
+        LevelChunkSection[] sections = new LevelChunkSection[live.length];
+        DataLayer[] blockLight = new DataLayer[live.length];
+        DataLayer[] skyLight = new DataLayer[live.length];
+        long bytes = 0;
+        for (int i = 0; i < live.length; i++) {
+            LevelChunkSection section = live[i];
+            if (section == null || section.hasOnlyAir()) continue;
+            sections[i] = section.copy();
+            bytes += section.getSerializedSize();
+            SectionPos sectionPos = SectionPos.of(pos, minY + i);
+            blockLight[i] = copyLight(blockEngine.getDataLayerData(sectionPos));
+            skyLight[i] = copyLight(skyEngine.getDataLayerData(sectionPos));
+            if (blockLight[i] != null && !blockLight[i].isDefinitelyHomogenous()) bytes += DataLayer.SIZE;
+            if (skyLight[i] != null && !skyLight[i].isDefinitelyHomogenous()) bytes += DataLayer.SIZE;
+        }
+        NetworkHandler.getStats().recordSnapshot(System.nanoTime() - start, bytes);
+        return new ChunkSnapshot(level, pos, minY, version, sections, blockLight, skyLight, bytes);
+    }
+
+    private static DataLayer copyLight(DataLayer layer) {
+        if (layer == null) return null;
+        // voxy keeps ingested layers for as long as its queue holds them, so every copy is its own array
+        return layer.copy();
+    }
+
+    public ServerLevel level() { return level; }
+    public ChunkPos pos() { return pos; }
+    public int minSectionY() { return minSectionY; }
+    public long version() { return version; }
+    public int sectionCount() { return sections.length; }
+    // null for air-only sections
+    public LevelChunkSection section(int index) { return sections[index]; }
+    public DataLayer blockLight(int index) { return blockLight[index]; }
+    public DataLayer skyLight(int index) { return skyLight[index]; }
+    // approximate heap held by the copies, serialized palettes plus light arrays
+    public long retainedBytes() { return retainedBytes; }
+}
@@ -1,20 +1,61 @@
 package com.ethan.voxyworldgenv2.core;
 
+import com.ethan.voxyworldgenv2.integration.VoxyIntegration;
+import com.ethan.voxyworldgenv2.network.LODPayloadCache;
+import com.ethan.voxyworldgenv2.network.LODStore;
 import com.ethan.voxyworldgenv2.network.NetworkHandler;
+import it.unimi.dsi.fastutil.longs.Long2LongLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.LightLayer;
+import net.minecraft.world.level.chunk.DataLayer;
 import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
 
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.world.level.Level;
-import java.util.Set;
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class ChunkUpdateTracker {
     private static final ChunkUpdateTracker INSTANCE = new ChunkUpdateTracker();
-    private final Map<ResourceKey<Level>, Set<Long>> dirtyChunks = new ConcurrentHashMap<>();
-    private final Map<ResourceKey<Level>, Long> lastProcessTimes = new ConcurrentHashMap<>();
+    private final Map<ResourceKey<Level>, DirtySet> dirtySets = new ConcurrentHashMap<>();
+    // content version per edited chunk, bumped on every rebroadcast to invalidate cached payloads
+    private final Map<ResourceKey<Level>, Versions> contentVersions = new ConcurrentHashMap<>();
+    // long past any snapshot still in flight, so an expired chunk going back to version 0 cannot pass for an older copy
+    private static final long VERSION_TTL_MS = 5 * 60 * 1000;
+
+    // versions plus when each was last bumped, oldest first, so the map only holds recently edited chunks
+    private static final class Versions {
+        final Long2LongOpenHashMap versions = new Long2LongOpenHashMap();
+        final Long2LongLinkedOpenHashMap bumpedAt = new Long2LongLinkedOpenHashMap();
+    }
+
+    // dirty section bitmask per chunk (bit i = section index i of the chunk) plus when it was first and last touched
+    // chunks move to ready once quiet or too old, and ready drains in insertion order under the tick budget
+    private static final class DirtySet {
+        final Long2LongOpenHashMap masks = new Long2LongOpenHashMap();
+        final Long2LongOpenHashMap firstSeen = new Long2LongOpenHashMap();
+        final Long2LongOpenHashMap lastSeen = new Long2LongOpenHashMap();
+        final Long2LongLinkedOpenHashMap ready = new Long2LongLinkedOpenHashMap();
+    }
+
+    // block updates arrive on the server thread in long runs for the same level, skip the map lookup for those
+    private record DirtyBucket(ResourceKey<Level> dimension, DirtySet set) {}
+    private volatile DirtyBucket lastBucket;
+
+    private final java.util.concurrent.atomic.AtomicLong capturedUpdates = new java.util.concurrent.atomic.AtomicLong(0);
+    private final java.util.concurrent.atomic.AtomicLong skippedChunks = new java.util.concurrent.atomic.AtomicLong(0);
+    private final java.util.concurrent.atomic.AtomicLong rebroadcastChunks = new java.util.concurrent.atomic.AtomicLong(0);
+    private final java.util.concurrent.atomic.AtomicLong reingestedSections = new java.util.concurrent.atomic.AtomicLong(0);
+    private volatile int backlog = 0;
+    private volatile double lastSpikeMs = 0;
+    private volatile double maxSpikeMs = 0;
 
     private ChunkUpdateTracker() {}
 
@@ -22,34 +63,202 @@ public class ChunkUpdateTracker {
         return INSTANCE;
     }
 
-    public void markDirty(LevelChunk chunk) {
-        dirtyChunks.computeIfAbsent(chunk.getLevel().dimension(), k -> ConcurrentHashMap.newKeySet())
-                .add(chunk.getPos().toLong());
+    // called for every block update, so no chunk lookup and nothing boxed: the key comes straight from the position
+    public void markDirty(ServerLevel level, BlockPos pos) {
+        int sectionIndex = level.getSectionIndex(pos.getY());
+        // light reaches up to 15 blocks, so the sections above and below go along with the edited one
+        // worlds taller than 64 sections fall back to resending the whole chunk
+        long bit = (sectionIndex >= 0 && sectionIndex < 64) ? sectionBits(sectionIndex) : -1L;
+        long key = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+        long now = System.currentTimeMillis();
+
+        ResourceKey<Level> dimension = level.dimension();
+        DirtyBucket bucket = lastBucket;
+        if (bucket == null || bucket.dimension() != dimension) {
+            bucket = new DirtyBucket(dimension, dirtySets.computeIfAbsent(dimension, k -> new DirtySet()));
+            lastBucket = bucket;
+        }
+        DirtySet set = bucket.set();
+        synchronized (set) {
+            long previous = set.masks.put(key, set.masks.get(key) | bit);
+            if (previous == 0) set.firstSeen.put(key, now);
+            set.lastSeen.put(key, now);
+        }
+        capturedUpdates.incrementAndGet();
+    }
+
+    private static long sectionBits(int sectionIndex) {
+        long bits = 1L << sectionIndex;
+        if (sectionIndex > 0) bits |= 1L << (sectionIndex - 1);
+        if (sectionIndex < 63) bits |= 1L << (sectionIndex + 1);
+        return bits;
+    }
+
+    public static boolean isSectionMarked(long mask, int sectionIndex) {
+        return sectionIndex < 64 ? (mask & (1L << sectionIndex)) != 0 : mask == -1L;
+    }
+
+    public long getVersion(ResourceKey<Level> dimension, long pos) {
+        Versions versions = contentVersions.get(dimension);
+        if (versions == null) return 0L;
+        synchronized (versions) {
+            return versions.versions.get(pos);
+        }
+    }
+
+    private void bumpVersion(ResourceKey<Level> dimension, long pos, long now) {
+        Versions versions = contentVersions.computeIfAbsent(dimension, k -> new Versions());
+        synchronized (versions) {
+            versions.versions.addTo(pos, 1L);
+            versions.bumpedAt.putAndMoveToLast(pos, now);
+        }
+    }
+
+    // drops versions nobody can still compare against, along with the cached payloads tagged with them
+    private static void expireVersions(ResourceKey<Level> dimension, Versions versions, long now) {
+        synchronized (versions) {
+            while (!versions.bumpedAt.isEmpty() && now - versions.bumpedAt.get(versions.bumpedAt.firstLongKey()) > VERSION_TTL_MS) {
+                long pos = versions.bumpedAt.firstLongKey();
+                versions.bumpedAt.removeFirstLong();
+                versions.versions.remove(pos);
+                LODPayloadCache.getInstance().invalidate(dimension, pos);
+            }
+        }
     }
 
-    public void processDirty(ServerLevel level) {
-        if (level == null) return;
-        
-        Set<Long> levelDirty = dirtyChunks.get(level.dimension());
-        if (levelDirty == null || levelDirty.isEmpty()) return;
+    public long getCapturedUpdates() { return capturedUpdates.get(); }
+    public long getSkippedChunks() { return skippedChunks.get(); }
+    public long getRebroadcastChunks() { return rebroadcastChunks.get(); }
+    public long getReingestedSections() { return reingestedSections.get(); }
+    // dirty chunks still waiting, either for quiet or for budget
+    public int getBacklog() { return backlog; }
+    public double getLastSpikeMs() { return lastSpikeMs; }
+    public double getMaxSpikeMs() { return maxSpikeMs; }
+
+    public void clear() {
+        lastBucket = null;
+        capturedUpdates.set(0);
+        skippedChunks.set(0);
+        rebroadcastChunks.set(0);
+        reingestedSections.set(0);
+        backlog = 0;
+        lastSpikeMs = 0;
+        maxSpikeMs = 0;
+        dirtySets.clear();
+        contentVersions.clear();
+    }
 
-        // throttle processing to every 2 seconds (40 ticks)
+    // one budget shared by every level per tick, so a blast or a paste is spread over several ticks
+    public void processDirty(Collection<ServerLevel> levels) {
+        long start = System.nanoTime();
+        long deadline = start + (long) (Math.max(0.1, Config.DATA.dirtyTickBudgetMs) * 1_000_000L);
         long now = System.currentTimeMillis();
-        long lastTime = lastProcessTimes.getOrDefault(level.dimension(), 0L);
-        if (now - lastTime < 2000) return;
-        lastProcessTimes.put(level.dimension(), now);
+        int waiting = 0;
+        int processed = 0;
+
+        for (ServerLevel level : levels) {
+            Versions versions = contentVersions.get(level.dimension());
+            if (versions != null) expireVersions(level.dimension(), versions, now);
+            DirtySet set = dirtySets.get(level.dimension());
+            if (set == null) continue;
+            promoteSettled(set, now);
+            processed += drainReady(level, set, deadline, now);
+            synchronized (set) {
+                waiting += set.masks.size() + set.ready.size();
+            }
+        }
+        backlog = waiting;
+
+        if (processed > 0) {
+            double ms = (System.nanoTime() - start) / 1_000_000.0;
+            lastSpikeMs = ms;
+            if (ms > maxSpikeMs) maxSpikeMs = ms;
+        }
+    }
+
+    // a chunk is ready once it has been quiet long enough, or has kept changing past the max age
+    private static void promoteSettled(DirtySet set, long now) {
+        long quiet = Config.DATA.dirtyQuietMs;
+        long maxAge = Config.DATA.dirtyMaxAgeMs;
+        synchronized (set) {
+            if (set.masks.isEmpty()) return;
+            var it = set.masks.long2LongEntrySet().fastIterator();
+            while (it.hasNext()) {
+                Long2LongMap.Entry entry = it.next();
+                long key = entry.getLongKey();
+                if (now - set.lastSeen.get(key) < quiet && now - set.firstSeen.get(key) < maxAge) continue;
+                set.ready.put(key, set.ready.get(key) | entry.getLongValue());
+                set.firstSeen.remove(key);
+                set.lastSeen.remove(key);
+                it.remove();
+            }
+        }
+    }
 
-        Set<Long> toProcess = new java.util.HashSet<>(levelDirty);
-        
-        for (long posLong : toProcess) {
+    private int drainReady(ServerLevel level, DirtySet set, long deadline, long now) {
+        int processed = 0;
+        // always make some progress, even when an earlier level used up the budget
+        while (processed == 0 || System.nanoTime() < deadline) {
+            long posLong;
+            long mask;
+            synchronized (set) {
+                if (set.ready.isEmpty()) break;
+                posLong = set.ready.firstLongKey();
+                mask = set.ready.removeFirstLong();
+            }
+            processed++;
             ChunkPos pos = new ChunkPos(posLong);
+            // the edit happened whether or not the chunk is still loaded, so cached copies go stale either way
+            // the store first, a sync read that saw the old version then either misses it or fails its version re-check
+            LODStore.getInstance().invalidate(level, pos);
+            bumpVersion(level.dimension(), posLong, now);
+            // the stored hash is stale until the next full encode records a new one
+            ChunkHashStore.getInstance().invalidate(level.dimension(), posLong);
             LevelChunk chunk = level.getChunkSource().getChunk(pos.x, pos.z, false);
-            if (chunk != null) {
-                NetworkHandler.broadcastLODData(chunk);
+            // an unloaded chunk has nothing to re-encode, sync sends it fresh once it loads again
+            if (chunk == null) continue;
+            // the host's own voxy gets just the edited sections instead of the whole chunk
+            if (Config.DATA.localReingest && VoxyIntegration.isRawIngestAvailable()) {
+                reingestedSections.addAndGet(reingestLocal(level, chunk, mask));
+            }
+            // nobody has this chunk yet, sync picks up the fresh copy when it gets there
+            if (!isSyncedByAnyone(level.dimension(), pos)) {
+                skippedChunks.incrementAndGet();
+                continue;
             }
+            rebroadcastChunks.incrementAndGet();
+            NetworkHandler.broadcastLODData(chunk, mask);
+        }
+        return processed;
+    }
+
+    private static int reingestLocal(ServerLevel level, LevelChunk chunk, long mask) {
+        LevelChunkSection[] sections = chunk.getSections();
+        int minY = chunk.getMinSectionY();
+        ChunkPos pos = chunk.getPos();
+        var blockLight = level.getLightEngine().getLayerListener(LightLayer.BLOCK);
+        var skyLight = level.getLightEngine().getLayerListener(LightLayer.SKY);
+        int count = 0;
+        for (int i = 0; i < sections.length; i++) {
+            // sections that became air are included too, so voxy clears them
+            if (sections[i] == null || !isSectionMarked(mask, i)) continue;
+            SectionPos sectionPos = SectionPos.of(pos, minY + i);
+            DataLayer block = blockLight.getDataLayerData(sectionPos);
+            DataLayer sky = skyLight.getDataLayerData(sectionPos);
+            // voxy may ingest off-thread, hand it copies so later edits cannot race its read
+            VoxyIntegration.rawIngest(level, sections[i].copy(), pos.x, minY + i, pos.z,
+                block != null ? block.copy() : null, sky != null ? sky.copy() : null);
+            count++;
+        }
+        return count;
+    }
+
+    private static boolean isSyncedByAnyone(ResourceKey<Level> dimension, ChunkPos pos) {
+        long key = pos.toLong();
+        for (var player : PlayerSpatialIndex.getInstance().getPlayersNear(dimension, pos, NetworkHandler.BROADCAST_RANGE_BLOCKS >> 4)) {
+            SyncedChunkMap synced = PlayerTracker.getInstance().getSyncedChunks(player.getUUID());
+            if (synced != null && synced.contains(key)) return true;
         }
-        
-        // remove only what we processed to avoid losing concurrent additions
-        levelDirty.removeAll(toProcess);
+        return false;
     }
 }
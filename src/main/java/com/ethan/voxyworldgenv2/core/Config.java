@@ -55,5 +55,28 @@ public final class Config {
         public int update_interval = 20; // legacy field for Compat
         public int maxQueueSize = 20000;
         public int maxActiveTasks = 20;
+        public int lodCacheMaxMb = 64;
+        public boolean compressLodData = true;
+        public int compressionLevel = 4;
+        public int compressionThreshold = 512; // bytes
+        public long maxBytesPerSecondPerPlayer = 2 * 1024 * 1024; // 0 = unlimited
+        public int maxQueuedPayloadsPerPlayer = 4096;
+        public boolean lodStoreEnabled = true; // keep encoded lods on disk so sync can serve unloaded chunks
+        // chunk distance past which lods are sent downsampled 2x, 4x and 8x, 0 = off
+        public int lodBand2x = 64;
+        public int lodBand4x = 128;
+        public int lodBand8x = 256;
+        public boolean persistentLodIndex = true; // client keeps hashes of ingested lods to skip resending them
+        // edited chunks are rebroadcast once quiet this long, or at the latest after the max age
+        public int dirtyQuietMs = 500;
+        public int dirtyMaxAgeMs = 3000;
+        public double dirtyTickBudgetMs = 4; // main-thread time per tick spent re-encoding edited chunks
+        public boolean localReingest = true; // push edited sections into the host's own voxy world
+        public int maxRequestDistance = 2048; // chunks from the player a client may ask lods for
+        public double maxRequestsPerSecond = 2;
+        public int lodCreditWindow = 512; // chunks a client lets the server have in flight, shrinks while its decode queue is full
+        public int ingestThreads = 0; // threads ingesting and encoding generated chunks off the server thread, 0 = a quarter of the cores
+        public boolean tellusBatchSampling = true; // sample tellus once per 4x4 batch instead of once per chunk
+        public int tellusTileCacheMb = 32; // sampled tellus heights and cover kept for neighbouring chunks, 0 = off
     }
 }
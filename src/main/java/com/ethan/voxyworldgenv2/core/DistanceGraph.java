@@ -175,7 +175,7 @@ public class DistanceGraph {
         return count;
     }
 
-    public void collectCompletedInRange(ChunkPos center, int radiusChunks, it.unimi.dsi.fastutil.longs.LongSet alreadySynced, List<ChunkPos> out, int maxResults) {
+    public void collectCompletedInRange(ChunkPos center, int radiusChunks, SyncedChunkMap alreadySynced, List<ChunkPos> out, int maxResults) {
         int cbx = center.x >> BATCH_SIZE_SHIFT;
         int cbz = center.z >> BATCH_SIZE_SHIFT;
         int rb = (radiusChunks + 3) >> BATCH_SIZE_SHIFT;
@@ -251,7 +251,7 @@ public class DistanceGraph {
         return c;
     }
 
-    private void recursiveCollectCompleted(Node node, int level, int nx, int nz, int cbx, int cbz, int rb, it.unimi.dsi.fastutil.longs.LongSet alreadySynced, List<ChunkPos> out, int maxResults) {
+    private void recursiveCollectCompleted(Node node, int level, int nx, int nz, int cbx, int cbz, int rb, SyncedChunkMap alreadySynced, List<ChunkPos> out, int maxResults) {
         if (out.size() >= maxResults) return;
         int size = 1 << (3 * level);
         if (getDistSq(nx, nz, size, cbx, cbz) > (double)rb * rb) return;
@@ -259,34 +259,28 @@ public class DistanceGraph {
         if (level == 0) return; 
 
         if (level == 1) {
+            // an l1 node covers exactly one synced region, so diff the two bitmaps batch by batch
+            long[] synced = alreadySynced.copyRegion(nx, nz);
             for (int i = 0; i < 64; i++) {
                 int bx = (nx << 3) + (i & 7);
                 int bz = (nz << 3) + (i >> 3);
-                if (getDistSq(bx, bz, 1, cbx, cbz) <= (double)rb * rb) {
+                double batchDistSq = getDistSq(bx, bz, 1, cbx, cbz);
+                if (batchDistSq <= (double)rb * rb) {
                     // if node is null (pruned but complete) or the bit is set in fullMask, treat as complete
+                    int completed;
                     if (node == null || (node.fullMask & (1L << i)) != 0) {
-                        for (int lz = 0; lz < 4; lz++) {
-                            for (int lx = 0; lx < 4; lx++) {
-                                ChunkPos pos = new ChunkPos((bx << 2) + lx, (bz << 2) + lz);
-                                if (!alreadySynced.contains(pos.toLong())) {
-                                    out.add(pos);
-                                    if (out.size() >= maxResults) return;
-                                }
-                            }
-                        }
+                        completed = 0xFFFF;
                     } else {
-                        Object child = node.children.get(i);
-                        if (child instanceof Integer mask) {
-                            for (int m = 0; m < 16; m++) {
-                                if ((mask & (1 << m)) != 0) {
-                                    ChunkPos pos = new ChunkPos((bx << 2) + (m & 3), (bz << 2) + (m >> 2));
-                                    if (!alreadySynced.contains(pos.toLong())) {
-                                        out.add(pos);
-                                        if (out.size() >= maxResults) return;
-                                    }
-                                }
-                            }
-                        }
+                        completed = node.children.get(i) instanceof Integer mask ? mask : 0;
+                    }
+                    // chunks sent coarser than this distance band wants count as missing, so they get refined
+                    int scale = LODBands.scaleFor((long) (batchDistSq * 16));
+                    int missing = completed & ~SyncedChunkMap.batchMask(synced, i, scale);
+                    while (missing != 0) {
+                        int m = Integer.numberOfTrailingZeros(missing);
+                        missing &= missing - 1;
+                        out.add(new ChunkPos((bx << 2) + (m & 3), (bz << 2) + (m >> 2)));
+                        if (out.size() >= maxResults) return;
                     }
                 }
             }
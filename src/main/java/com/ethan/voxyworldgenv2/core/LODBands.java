@@ -0,0 +1,27 @@
+package com.ethan.voxyworldgenv2.core;
+
+// maps chunk distance to the downsample scale a lod is sent at, scale s = 2^s blocks per cell
+public final class LODBands {
+    public static final int MAX_SCALE = 3;
+
+    private LODBands() {}
+
+    public static int scaleFor(long distSqChunks) {
+        if (beyond(Config.DATA.lodBand8x, distSqChunks)) return 3;
+        if (beyond(Config.DATA.lodBand4x, distSqChunks)) return 2;
+        if (beyond(Config.DATA.lodBand2x, distSqChunks)) return 1;
+        return 0;
+    }
+
+    // measured between 4x4 batches exactly like distance graph collection, so a sent scale never reads as too coarse
+    public static int scaleFor(int cx, int cz, int centerX, int centerZ) {
+        long dx = (cx >> 2) - (centerX >> 2);
+        long dz = (cz >> 2) - (centerZ >> 2);
+        return scaleFor((dx * dx + dz * dz) * 16);
+    }
+
+    // past the start of a band, an unset (0) band never starts
+    private static boolean beyond(int band, long distSqChunks) {
+        return band > 0 && distSqChunks > (long) band * band;
+    }
+}
@@ -0,0 +1,195 @@
+package com.ethan.voxyworldgenv2.core;
+
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+// areas clients asked for on top of their own surroundings, like a map teleport target or a spectator camera
+public class LODRequests {
+    private static final LODRequests INSTANCE = new LODRequests();
+    public static final int MAX_ACTIVE = 4;
+    public static final int MAX_SPAN = 128; // chunks per side
+    private static final long TTL_MS = 30_000;
+
+    // the requested rectangle is served as the circle around it, which is what distance graph walks
+    public record Request(ResourceKey<Level> dimension, ChunkPos center, int radius, int priority, long expiresAt) {
+        public boolean covers(ResourceKey<Level> dim, long pos) {
+            if (!dimension.equals(dim)) return false;
+            long dx = ChunkPos.getX(pos) - center.x;
+            long dz = ChunkPos.getZ(pos) - center.z;
+            return dx * dx + dz * dz <= (long) radius * radius;
+        }
+    }
+
+    private final Map<UUID, List<Request>> requests = new ConcurrentHashMap<>();
+    // token bucket per player: tokens, last refill ms
+    private final Map<UUID, double[]> buckets = new ConcurrentHashMap<>();
+
+    private final AtomicLong accepted = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+
+    private LODRequests() {}
+
+    public static LODRequests getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean submit(ServerPlayer player, ResourceKey<Level> dimension, int minX, int minZ, int maxX, int maxZ, int priority) {
+        UUID uuid = player.getUUID();
+        if (!dimension.equals(player.level().dimension()) || !tryAcquire(uuid)) {
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        int centerX = (int) (((long) Math.min(minX, maxX) + Math.max(minX, maxX)) >> 1);
+        int centerZ = (int) (((long) Math.min(minZ, maxZ) + Math.max(minZ, maxZ)) >> 1);
+        ChunkPos playerPos = player.chunkPosition();
+        long dx = centerX - playerPos.x;
+        long dz = centerZ - playerPos.z;
+        long maxDistance = Config.DATA.maxRequestDistance;
+        if (dx * dx + dz * dz > maxDistance * maxDistance) {
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        // oversized rectangles are cut down around their center
+        double halfX = Math.min((long) Math.abs(maxX - minX) + 1, MAX_SPAN) / 2.0;
+        double halfZ = Math.min((long) Math.abs(maxZ - minZ) + 1, MAX_SPAN) / 2.0;
+        int radius = (int) Math.ceil(Math.sqrt(halfX * halfX + halfZ * halfZ));
+        Request request = new Request(dimension, new ChunkPos(centerX, centerZ), radius, priority, System.currentTimeMillis() + TTL_MS);
+
+        requests.compute(uuid, (k, current) -> {
+            List<Request> next = new ArrayList<>();
+            if (current != null) {
+                for (Request r : current) {
+                    if (!r.center().equals(request.center()) && r.dimension().equals(dimension)) next.add(r);
+                }
+            }
+            next.add(request);
+            // highest priority first, newest first within a priority
+            next.sort(Comparator.comparingInt(Request::priority).reversed().thenComparing(Comparator.comparingLong(Request::expiresAt).reversed()));
+            return List.copyOf(next.subList(0, Math.min(next.size(), MAX_ACTIVE)));
+        });
+        accepted.incrementAndGet();
+        return true;
+    }
+
+    private boolean tryAcquire(UUID uuid) {
+        double rate = Math.max(0.1, Config.DATA.maxRequestsPerSecond);
+        long now = System.currentTimeMillis();
+        double[] bucket = buckets.computeIfAbsent(uuid, k -> new double[] { MAX_ACTIVE, now });
+        synchronized (bucket) {
+            bucket[0] = Math.min(MAX_ACTIVE, bucket[0] + rate * (now - bucket[1]) / 1000.0);
+            bucket[1] = now;
+            if (bucket[0] < 1) return false;
+            bucket[0] -= 1;
+            return true;
+        }
+    }
+
+    // live requests in the given dimension, highest priority first
+    public List<Request> get(UUID uuid, ResourceKey<Level> dimension) {
+        List<Request> current = requests.get(uuid);
+        if (current == null) return List.of();
+        long now = System.currentTimeMillis();
+        boolean stale = false;
+        for (Request r : current) {
+            if (r.expiresAt() < now || !r.dimension().equals(dimension)) {
+                stale = true;
+                break;
+            }
+        }
+        if (!stale) return current;
+        List<Request> live = requests.computeIfPresent(uuid, (k, list) -> {
+            List<Request> next = new ArrayList<>();
+            for (Request r : list) {
+                if (r.expiresAt() >= now && r.dimension().equals(dimension)) next.add(r);
+            }
+            return next.isEmpty() ? null : List.copyOf(next);
+        });
+        return live == null ? List.of() : live;
+    }
+
+    // everything in the area is generated and synced
+    public void complete(UUID uuid, Request request) {
+        requests.computeIfPresent(uuid, (k, list) -> {
+            List<Request> next = new ArrayList<>(list);
+            next.remove(request);
+            return next.isEmpty() ? null : List.copyOf(next);
+        });
+    }
+
+    // a player's request set at one point in time, equal to another as long as the requests did not change
+    public record Coverage(ResourceKey<Level> dimension, List<Request> requests) implements LongPredicate {
+        @Override
+        public boolean test(long pos) {
+            for (Request r : requests) {
+                if (r.covers(dimension, pos)) return true;
+            }
+            return false;
+        }
+    }
+
+    // null when the player has no requests
+    public Coverage coverage(UUID uuid, ResourceKey<Level> dimension) {
+        List<Request> current = requests.get(uuid);
+        return current == null ? null : new Coverage(dimension, current);
+    }
+
+    public boolean hasRequests(UUID uuid) {
+        return requests.containsKey(uuid);
+    }
+
+    // players that asked for this chunk, so freshly generated chunks reach them even when they are far away
+    public List<UUID> getRequesters(ResourceKey<Level> dimension, long pos) {
+        List<UUID> out = new ArrayList<>();
+        if (requests.isEmpty()) return out;
+        for (Map.Entry<UUID, List<Request>> entry : requests.entrySet()) {
+            for (Request r : entry.getValue()) {
+                if (r.covers(dimension, pos)) {
+                    out.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+        return out;
+    }
+
+    // a requested area counts as a second point of view, so lods there are sent as fine as if the player stood there
+    public int refineScale(UUID uuid, ResourceKey<Level> dimension, ChunkPos pos, int scale) {
+        List<Request> current = requests.get(uuid);
+        if (current == null) return scale;
+        for (Request r : current) {
+            if (scale == 0) break;
+            if (r.dimension().equals(dimension)) {
+                scale = Math.min(scale, LODBands.scaleFor(pos.x, pos.z, r.center().x, r.center().z));
+            }
+        }
+        return scale;
+    }
+
+    public long getAccepted() { return accepted.get(); }
+    public long getRejected() { return rejected.get(); }
+
+    public void remove(UUID uuid) {
+        requests.remove(uuid);
+        buckets.remove(uuid);
+    }
+
+    public void clear() {
+        requests.clear();
+        buckets.clear();
+        accepted.set(0);
+        rejected.set(0);
+    }
+}
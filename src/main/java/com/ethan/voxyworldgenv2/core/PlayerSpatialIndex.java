@@ -0,0 +1,93 @@
+package com.ethan.voxyworldgenv2.core;
+
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// coarse per-dimension grid of players so lod fan-out only looks at nearby cells
+public class PlayerSpatialIndex {
+    private static final PlayerSpatialIndex INSTANCE = new PlayerSpatialIndex();
+    public static final int CELL_SHIFT = 6; // 64 chunks
+
+    // the player is kept too, respawning or changing dimension hands out a new ServerPlayer under the same uuid
+    private record Cell(ResourceKey<Level> dimension, long key, ServerPlayer player) {}
+
+    private final Map<ResourceKey<Level>, Map<Long, List<ServerPlayer>>> cells = new ConcurrentHashMap<>();
+    private final Map<UUID, Cell> playerCells = new ConcurrentHashMap<>();
+
+    private PlayerSpatialIndex() {}
+
+    public static PlayerSpatialIndex getInstance() {
+        return INSTANCE;
+    }
+
+    // called every tick from the server thread, only touches the grid when the player crossed a cell
+    public void update(ServerPlayer player) {
+        ResourceKey<Level> dimension = player.level().dimension();
+        ChunkPos pos = player.chunkPosition();
+        Cell cell = new Cell(dimension, ChunkPos.asLong(pos.x >> CELL_SHIFT, pos.z >> CELL_SHIFT), player);
+        Cell previous = playerCells.put(player.getUUID(), cell);
+        if (previous != null && previous.player() == player && previous.key() == cell.key() && previous.dimension().equals(dimension)) return;
+
+        if (previous != null) removeFrom(previous, player.getUUID());
+        cells.computeIfAbsent(dimension, k -> new ConcurrentHashMap<>())
+            .computeIfAbsent(cell.key(), k -> new ArrayList<>())
+            .add(player);
+    }
+
+    public void remove(ServerPlayer player) {
+        Cell previous = playerCells.remove(player.getUUID());
+        if (previous != null) removeFrom(previous, player.getUUID());
+    }
+
+    private void removeFrom(Cell cell, UUID uuid) {
+        Map<Long, List<ServerPlayer>> grid = cells.get(cell.dimension());
+        if (grid == null) return;
+        List<ServerPlayer> list = grid.get(cell.key());
+        if (list == null) return;
+        list.removeIf(p -> p.getUUID().equals(uuid));
+        if (list.isEmpty()) grid.remove(cell.key());
+    }
+
+    // players whose cell overlaps the radius, callers still apply their exact distance check
+    public List<ServerPlayer> getPlayersNear(ResourceKey<Level> dimension, ChunkPos center, int radiusChunks) {
+        List<ServerPlayer> out = new ArrayList<>();
+        Map<Long, List<ServerPlayer>> grid = cells.get(dimension);
+        if (grid == null || grid.isEmpty()) return out;
+
+        int minX = (center.x - radiusChunks) >> CELL_SHIFT;
+        int maxX = (center.x + radiusChunks) >> CELL_SHIFT;
+        int minZ = (center.z - radiusChunks) >> CELL_SHIFT;
+        int maxZ = (center.z + radiusChunks) >> CELL_SHIFT;
+
+        // a sparse grid is cheaper to walk than a large window of empty cells
+        if ((long) (maxX - minX + 1) * (maxZ - minZ + 1) > grid.size()) {
+            for (Map.Entry<Long, List<ServerPlayer>> entry : grid.entrySet()) {
+                int cx = ChunkPos.getX(entry.getKey());
+                int cz = ChunkPos.getZ(entry.getKey());
+                if (cx >= minX && cx <= maxX && cz >= minZ && cz <= maxZ) out.addAll(entry.getValue());
+            }
+            return out;
+        }
+
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cz = minZ; cz <= maxZ; cz++) {
+                List<ServerPlayer> list = grid.get(ChunkPos.asLong(cx, cz));
+                if (list != null) out.addAll(list);
+            }
+        }
+        return out;
+    }
+
+    public void clear() {
+        cells.clear();
+        playerCells.clear();
+    }
+}
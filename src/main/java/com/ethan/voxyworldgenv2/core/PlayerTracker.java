@@ -1,5 +1,6 @@
 package com.ethan.voxyworldgenv2.core;
 
+import com.ethan.voxyworldgenv2.network.LODSendQueue;
 import net.minecraft.server.level.ServerPlayer;
 
 import java.util.Collection;
@@ -11,11 +12,26 @@ import java.util.concurrent.ConcurrentHashMap;
 public class PlayerTracker {
     private static final PlayerTracker INSTANCE = new PlayerTracker();
     private final Set<ServerPlayer> players;
-    private final java.util.Map<java.util.UUID, it.unimi.dsi.fastutil.longs.LongSet> syncedChunks;
+    private final java.util.Map<java.util.UUID, SyncedChunkMap> syncedChunks;
+    // network capabilities each client accepted during the handshake
+    private final java.util.Map<java.util.UUID, Integer> capabilities;
+    private final java.util.Map<java.util.UUID, LODSendQueue> sendQueues;
+    // initial sync is held back until the client summary arrives or this deadline passes,
+    // and summaries are only accepted while the window is open
+    private final java.util.Map<java.util.UUID, ResyncWindow> resyncWindows;
+    private static final long RESYNC_TIMEOUT_MS = 5000;
+
+    private static final class ResyncWindow {
+        final long deadline = System.currentTimeMillis() + RESYNC_TIMEOUT_MS;
+        int regions;
+    }
     
     private PlayerTracker() {
         this.players = ConcurrentHashMap.newKeySet();
         this.syncedChunks = new ConcurrentHashMap<>();
+        this.capabilities = new ConcurrentHashMap<>();
+        this.sendQueues = new ConcurrentHashMap<>();
+        this.resyncWindows = new ConcurrentHashMap<>();
     }
     
     public static PlayerTracker getInstance() {
@@ -24,14 +40,23 @@ public class PlayerTracker {
     
     public void addPlayer(ServerPlayer player) {
         players.add(player);
-        syncedChunks.put(player.getUUID(), it.unimi.dsi.fastutil.longs.LongSets.synchronize(new it.unimi.dsi.fastutil.longs.LongOpenHashSet()));
+        SyncedChunkMap synced = new SyncedChunkMap();
+        synced.setDimension(player.level().dimension());
+        syncedChunks.put(player.getUUID(), synced);
+        sendQueues.put(player.getUUID(), new LODSendQueue());
+        resyncWindows.put(player.getUUID(), new ResyncWindow());
     }
     
     public void removePlayer(ServerPlayer player) {
         UUID uuid = player.getUUID();
         players.remove(player);
+        PlayerSpatialIndex.getInstance().remove(player);
+        LODRequests.getInstance().remove(uuid);
+        capabilities.remove(uuid);
+        sendQueues.remove(uuid);
+        resyncWindows.remove(uuid);
         // CRITICAL: Remove the chunk data from memory when the player leaves
-        it.unimi.dsi.fastutil.longs.LongSet removed = syncedChunks.remove(uuid);
+        SyncedChunkMap removed = syncedChunks.remove(uuid);
         if (removed != null) {
             removed.clear(); 
         }
@@ -39,24 +64,75 @@ public class PlayerTracker {
     
     public void clear() {
         players.clear();
+        PlayerSpatialIndex.getInstance().clear();
+        LODRequests.getInstance().clear();
         syncedChunks.clear();
+        capabilities.clear();
+        sendQueues.clear();
+        resyncWindows.clear();
     }
     
     public Collection<ServerPlayer> getPlayers() {
         return Collections.unmodifiableCollection(players);
     }
 
-    public it.unimi.dsi.fastutil.longs.LongSet getSyncedChunks(java.util.UUID uuid) {
+    public SyncedChunkMap getSyncedChunks(java.util.UUID uuid) {
         return syncedChunks.get(uuid);
     }
     
+    public LODSendQueue getSendQueue(UUID uuid) {
+        return sendQueues.get(uuid);
+    }
+
+    public void setCapabilities(UUID uuid, int caps) {
+        capabilities.put(uuid, caps);
+        if ((caps & com.ethan.voxyworldgenv2.network.NetworkHandler.CAP_RESYNC) == 0) {
+            resyncWindows.remove(uuid);
+        }
+    }
+
+    public boolean isAwaitingResync(UUID uuid) {
+        ResyncWindow window = resyncWindows.get(uuid);
+        if (window == null) return false;
+        if (System.currentTimeMillis() < window.deadline) return true;
+        resyncWindows.remove(uuid);
+        return false;
+    }
+
+    // the client sends a fresh summary after a dimension change
+    public void openResync(UUID uuid) {
+        if (hasCapability(uuid, com.ethan.voxyworldgenv2.network.NetworkHandler.CAP_RESYNC)) {
+            resyncWindows.put(uuid, new ResyncWindow());
+        }
+    }
+
+    // how many of the next count summary regions may still be matched, 0 once the window is closed
+    public int claimResyncRegions(UUID uuid, int count) {
+        if (!isAwaitingResync(uuid)) return 0;
+        ResyncWindow window = resyncWindows.get(uuid);
+        if (window == null) return 0;
+        synchronized (window) {
+            int allowed = Math.min(count, com.ethan.voxyworldgenv2.network.NetworkHandler.MAX_RESYNC_REGIONS - window.regions);
+            window.regions += allowed;
+            return allowed;
+        }
+    }
+
+    public void finishResync(UUID uuid) {
+        resyncWindows.remove(uuid);
+    }
+
+    public boolean hasCapability(UUID uuid, int cap) {
+        return (capabilities.getOrDefault(uuid, 0) & cap) != 0;
+    }
+    
     public int getPlayerCount() {
         return players.size();
     }
 
     public void clearSyncCacheForPlayer(ServerPlayer player) {
         if (player == null) return;
-        it.unimi.dsi.fastutil.longs.LongSet synced = syncedChunks.get(player.getUUID());
+        SyncedChunkMap synced = syncedChunks.get(player.getUUID());
         if (synced != null) {
             // Force clear the sync cache to trigger a full LOD refresh
             // Useful for dimension changes or manual refreshes
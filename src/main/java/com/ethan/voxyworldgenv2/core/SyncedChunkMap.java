@@ -0,0 +1,174 @@
+package com.ethan.voxyworldgenv2.core;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+
+import java.util.List;
+
+/**
+ * chunks already sent to one player, as a bitmap laid out like distance graph l1 nodes
+ * region: 32x32 chunks = 8x8 batches, 16 bits per 4x4 batch, 4 batches per long
+ * followed by the 2-bit downsample scale each chunk was sent at, 2 batches per long
+ */
+public class SyncedChunkMap {
+    public static final int REGION_SHIFT = 5; // 32 chunks
+    private static final int BIT_WORDS = 16;
+    private static final int WORDS = BIT_WORDS + 32;
+
+    // guarded by itself for lookups only, each region's words are guarded by the array
+    private final Long2ObjectMap<long[]> regions = new Long2ObjectOpenHashMap<>();
+    private volatile ResourceKey<Level> dimension;
+
+    // positions are only meaningful within one dimension, start over when the player switches
+    // true when this moved the map to a new dimension
+    public boolean setDimension(ResourceKey<Level> dim) {
+        if (dim.equals(dimension)) return false;
+        synchronized (this) {
+            if (dim.equals(dimension)) return false;
+            clear();
+            dimension = dim;
+            return true;
+        }
+    }
+
+    public ResourceKey<Level> getDimension() {
+        return dimension;
+    }
+
+    public boolean add(long pos) {
+        return add(pos, 0);
+    }
+
+    // refinements overwrite the scale, so a chunk sent at 8x and later at full counts as full
+    public boolean add(long pos, int scale) {
+        int cx = ChunkPos.getX(pos);
+        int cz = ChunkPos.getZ(pos);
+        long key = regionKey(cx, cz);
+        long[] words;
+        synchronized (regions) {
+            words = regions.get(key);
+            if (words == null) {
+                words = new long[WORDS];
+                regions.put(key, words);
+            }
+        }
+        int bit = bitIndex(cx, cz);
+        long flag = 1L << (bit & 63);
+        int scaleWord = BIT_WORDS + (bit >> 5);
+        int scaleShift = (bit & 31) << 1;
+        synchronized (words) {
+            boolean added = (words[bit >> 6] & flag) == 0;
+            words[bit >> 6] |= flag;
+            words[scaleWord] = (words[scaleWord] & ~(3L << scaleShift)) | ((long) (scale & 3) << scaleShift);
+            return added;
+        }
+    }
+
+    public boolean contains(long pos) {
+        int cx = ChunkPos.getX(pos);
+        int cz = ChunkPos.getZ(pos);
+        long[] words = region(regionKey(cx, cz));
+        if (words == null) return false;
+        int bit = bitIndex(cx, cz);
+        synchronized (words) {
+            return (words[bit >> 6] & (1L << (bit & 63))) != 0;
+        }
+    }
+
+    public void remove(long pos) {
+        int cx = ChunkPos.getX(pos);
+        int cz = ChunkPos.getZ(pos);
+        long[] words = region(regionKey(cx, cz));
+        if (words == null) return;
+        int bit = bitIndex(cx, cz);
+        synchronized (words) {
+            words[bit >> 6] &= ~(1L << (bit & 63));
+        }
+    }
+
+    // queued entries can outlive a dimension change, ignore them once the map has moved on
+    public void remove(ResourceKey<Level> dim, long pos) {
+        if (dim.equals(dimension)) remove(pos);
+    }
+
+    // copy of one region's words, null when nothing in it was synced
+    public long[] copyRegion(int rx, int rz) {
+        long[] words = region(ChunkPos.asLong(rx, rz));
+        if (words == null) return null;
+        synchronized (words) {
+            return words.clone();
+        }
+    }
+
+    // 16-bit mask of one 4x4 batch, batch index as in distance graph l1 (x + z * 8)
+    public static int batchMask(long[] words, int batchIndex) {
+        if (words == null) return 0;
+        return (int) ((words[batchIndex >> 2] >>> ((batchIndex & 3) << 4)) & 0xFFFF);
+    }
+
+    // like batchMask, but only chunks already sent at maxScale or finer
+    public static int batchMask(long[] words, int batchIndex, int maxScale) {
+        int mask = batchMask(words, batchIndex);
+        if (mask == 0 || maxScale >= LODBands.MAX_SCALE) return mask;
+        int scales = (int) (words[BIT_WORDS + (batchIndex >> 1)] >>> ((batchIndex & 1) << 5));
+        for (int m = 0; m < 16; m++) {
+            if (((scales >>> (m << 1)) & 3) > maxScale) mask &= ~(1 << m);
+        }
+        return mask;
+    }
+
+    // forget regions wholly outside the radius and every kept request, they get resent if the player comes back
+    public int evictOutside(ChunkPos center, int radiusChunks, List<LODRequests.Request> keep) {
+        synchronized (regions) {
+            int before = regions.size();
+            regions.keySet().removeIf((long key) -> {
+                if (overlaps(key, center, radiusChunks)) return false;
+                for (LODRequests.Request request : keep) {
+                    if (overlaps(key, request.center(), request.radius())) return false;
+                }
+                return true;
+            });
+            return before - regions.size();
+        }
+    }
+
+    private static boolean overlaps(long regionKey, ChunkPos center, int radiusChunks) {
+        int size = 1 << REGION_SHIFT;
+        int minX = ChunkPos.getX(regionKey) << REGION_SHIFT;
+        int minZ = ChunkPos.getZ(regionKey) << REGION_SHIFT;
+        long dx = Math.max(0, Math.max(minX - center.x, center.x - (minX + size - 1)));
+        long dz = Math.max(0, Math.max(minZ - center.z, center.z - (minZ + size - 1)));
+        return dx * dx + dz * dz <= (long) radiusChunks * radiusChunks;
+    }
+
+    public int getRegionCount() {
+        synchronized (regions) {
+            return regions.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (regions) {
+            regions.clear();
+        }
+    }
+
+    private long[] region(long key) {
+        synchronized (regions) {
+            return regions.get(key);
+        }
+    }
+
+    private static long regionKey(int cx, int cz) {
+        return ChunkPos.asLong(cx >> REGION_SHIFT, cz >> REGION_SHIFT);
+    }
+
+    // batch-major so one batch's 16 chunks share a word slot
+    private static int bitIndex(int cx, int cz) {
+        int batch = ((cx >> 2) & 7) + (((cz >> 2) & 7) << 3);
+        return (batch << 4) + (cx & 3) + ((cz & 3) << 2);
+    }
+}
@@ -5,96 +5,96 @@ import net.minecraft.world.level.chunk.LevelChunk;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 
 public final class VoxyIntegration {
-    private static boolean initialized = false;
-    private static boolean enabled = false;
-    private static MethodHandle ingestMethod;
-    private static MethodHandle rawIngestMethod;
-    private static MethodHandle worldIdentifierOfMethod;
-
     private VoxyIntegration() {}
 
-    private static void initialize() {
-        if (initialized) return;
-        initialized = true;
-
-        try {
-            Class<?> ingestServiceClass = Class.forName("me.cortex.voxy.common.world.service.VoxelIngestService");
-            Class<?> worldIdentifierClass = Class.forName("me.cortex.voxy.commonImpl.WorldIdentifier");
-            
-            Object serviceInstance = null;
+    // resolved once on first use under the class init lock, so every thread sees them complete
+    // static final so the jit can treat them as constants, adapted to fixed erased signatures for invokeExact
+    private static final class Handles {
+        static final boolean ENABLED;
+        static final MethodHandle INGEST;
+        static final MethodHandle RAW_INGEST;
+
+        static {
+            boolean enabled = false;
+            MethodHandle ingest = null;
+            MethodHandle rawIngest = null;
             try {
-                Field instanceField = ingestServiceClass.getDeclaredField("INSTANCE");
-                serviceInstance = instanceField.get(null);
-            } catch (Exception ignored) {
-            }
+                Class<?> ingestServiceClass = Class.forName("me.cortex.voxy.common.world.service.VoxelIngestService");
+                Class<?> worldIdentifierClass = Class.forName("me.cortex.voxy.commonImpl.WorldIdentifier");
+
+                Object serviceInstance = null;
+                try {
+                    Field instanceField = ingestServiceClass.getDeclaredField("INSTANCE");
+                    serviceInstance = instanceField.get(null);
+                } catch (Exception ignored) {
+                }
 
-            MethodHandles.Lookup lookup = MethodHandles.lookup();
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
 
-            // 1. find main ingest method
-            String[] commonMethods = {"ingestChunk", "tryAutoIngestChunk", "enqueueIngest", "ingest"};
-            Method targetMethod = null;
-            for (String methodName : commonMethods) {
+                // 1. find main ingest method
+                String[] commonMethods = {"ingestChunk", "tryAutoIngestChunk", "enqueueIngest", "ingest"};
+                Method targetMethod = null;
+                for (String methodName : commonMethods) {
+                    try {
+                        targetMethod = ingestServiceClass.getMethod(methodName, LevelChunk.class);
+                        if (targetMethod != null) break;
+                    } catch (NoSuchMethodException ignored) {}
+                }
+
+                if (targetMethod != null) {
+                    MethodHandle handle = lookup.unreflect(targetMethod);
+                    if (serviceInstance != null && !Modifier.isStatic(targetMethod.getModifiers())) {
+                        handle = handle.bindTo(serviceInstance);
+                    }
+                    ingest = handle.asType(MethodType.methodType(void.class, LevelChunk.class));
+                    enabled = true;
+                }
+
+                // 2. find rawIngest method
                 try {
-                    targetMethod = ingestServiceClass.getMethod(methodName, LevelChunk.class);
-                    if (targetMethod != null) break;
+                    Method method = ingestServiceClass.getMethod("rawIngest",
+                        worldIdentifierClass,
+                        net.minecraft.world.level.chunk.LevelChunkSection.class,
+                        int.class, int.class, int.class,
+                        net.minecraft.world.level.chunk.DataLayer.class,
+                        net.minecraft.world.level.chunk.DataLayer.class);
+                    rawIngest = lookup.unreflect(method).asType(MethodType.methodType(void.class, Object.class,
+                        net.minecraft.world.level.chunk.LevelChunkSection.class, int.class, int.class, int.class,
+                        net.minecraft.world.level.chunk.DataLayer.class, net.minecraft.world.level.chunk.DataLayer.class));
                 } catch (NoSuchMethodException ignored) {}
-            }
 
-            if (targetMethod != null) {
-                ingestMethod = lookup.unreflect(targetMethod);
-                if (serviceInstance != null && !Modifier.isStatic(targetMethod.getModifiers())) {
-                    ingestMethod = ingestMethod.bindTo(serviceInstance);
-                }
-                enabled = true;
-            }
+                VoxyWorldGenV2.LOGGER.info("voxy integration initialized (enabled: {}, raw: {})", enabled, rawIngest != null);
 
-            // 2. find rawIngest method
-            try {
-                Method rawIngest = ingestServiceClass.getMethod("rawIngest", 
-                    worldIdentifierClass, 
-                    net.minecraft.world.level.chunk.LevelChunkSection.class, 
-                    int.class, int.class, int.class, 
-                    net.minecraft.world.level.chunk.DataLayer.class, 
-                    net.minecraft.world.level.chunk.DataLayer.class);
-                rawIngestMethod = lookup.unreflect(rawIngest);
-            } catch (NoSuchMethodException ignored) {}
-
-            // 3. find WorldIdentifier.of method
-            try {
-                Method ofMethod = worldIdentifierClass.getMethod("of", net.minecraft.world.level.Level.class);
-                worldIdentifierOfMethod = lookup.unreflect(ofMethod);
-            } catch (NoSuchMethodException ignored) {}
-
-            VoxyWorldGenV2.LOGGER.info("voxy integration initialized (enabled: {}, raw: {})", enabled, rawIngestMethod != null);
-
-        } catch (ClassNotFoundException e) {
-            VoxyWorldGenV2.LOGGER.info("voxy not present, integration disabled");
-            enabled = false;
-        } catch (Exception e) {
-            VoxyWorldGenV2.LOGGER.error("failed to initialize voxy integration", e);
-            enabled = false;
+            } catch (ClassNotFoundException e) {
+                VoxyWorldGenV2.LOGGER.info("voxy not present, integration disabled");
+            } catch (Exception e) {
+                VoxyWorldGenV2.LOGGER.error("failed to initialize voxy integration", e);
+                enabled = false;
+            }
+            ENABLED = enabled;
+            INGEST = ingest;
+            RAW_INGEST = rawIngest;
         }
     }
 
     public static void ingestChunk(LevelChunk chunk) {
-        if (!initialized) initialize();
-        if (!enabled || ingestMethod == null) return;
+        if (!Handles.ENABLED || Handles.INGEST == null) return;
 
         try {
-            ingestMethod.invoke(chunk);
+            Handles.INGEST.invokeExact(chunk);
         } catch (Throwable e) {
             VoxyWorldGenV2.LOGGER.error("failed to ingest chunk", e);
         }
     }
 
     public static void rawIngest(LevelChunk chunk, net.minecraft.world.level.chunk.DataLayer skyLight) {
-        if (!initialized) initialize();
-        if (rawIngestMethod == null || worldIdentifierOfMethod == null) return;
+        if (Handles.RAW_INGEST == null || !VoxyWorldIds.isAvailable()) return;
 
         try {
             net.minecraft.world.level.chunk.LevelChunkSection[] sections = chunk.getSections();
@@ -102,30 +102,48 @@ public final class VoxyIntegration {
             int cz = chunk.getPos().z;
             int minY = chunk.getMinSectionY();
             
-            // get worldid once per chunk
-            Object worldId = worldIdentifierOfMethod.invoke(chunk.getLevel());
+            Object worldId = VoxyWorldIds.of(chunk.getLevel());
             if (worldId == null) return;
 
             for (int i = 0; i < sections.length; i++) {
                 net.minecraft.world.level.chunk.LevelChunkSection section = sections[i];
                 if (section == null || section.hasOnlyAir()) continue;
                 
-                rawIngestMethod.invoke(worldId, section, cx, minY + i, cz, null, skyLight);
+                Handles.RAW_INGEST.invokeExact(worldId, section, cx, minY + i, cz, (net.minecraft.world.level.chunk.DataLayer) null, skyLight);
             }
         } catch (Throwable e) {
             VoxyWorldGenV2.LOGGER.error("failed to raw ingest chunk", e);
         }
     }
     
+    // the snapshot already holds copies, so this can run on any thread
+    public static void rawIngest(com.ethan.voxyworldgenv2.core.ChunkSnapshot snapshot) {
+        if (Handles.RAW_INGEST == null || !VoxyWorldIds.isAvailable()) return;
+
+        try {
+            Object worldId = VoxyWorldIds.of(snapshot.level());
+            if (worldId == null) return;
+
+            int cx = snapshot.pos().x;
+            int cz = snapshot.pos().z;
+            for (int i = 0; i < snapshot.sectionCount(); i++) {
+                net.minecraft.world.level.chunk.LevelChunkSection section = snapshot.section(i);
+                if (section == null) continue;
+                Handles.RAW_INGEST.invokeExact(worldId, section, cx, snapshot.minSectionY() + i, cz, snapshot.blockLight(i), snapshot.skyLight(i));
+            }
+        } catch (Throwable e) {
+            VoxyWorldGenV2.LOGGER.error("failed to raw ingest chunk " + snapshot.pos(), e);
+        }
+    }
+
     public static void rawIngest(net.minecraft.world.level.Level level, net.minecraft.world.level.chunk.LevelChunkSection section, int cx, int cy, int cz, net.minecraft.world.level.chunk.DataLayer blockLight, net.minecraft.world.level.chunk.DataLayer skyLight) {
-        if (!initialized) initialize();
-        if (rawIngestMethod == null || worldIdentifierOfMethod == null) return;
+        if (Handles.RAW_INGEST == null || !VoxyWorldIds.isAvailable()) return;
 
         try {
-            Object worldId = worldIdentifierOfMethod.invoke(level);
+            Object worldId = VoxyWorldIds.of(level);
             if (worldId == null) return;
             
-            rawIngestMethod.invoke(worldId, section, cx, cy, cz, blockLight, skyLight);
+            Handles.RAW_INGEST.invokeExact(worldId, section, cx, cy, cz, blockLight, skyLight);
         } catch (Throwable e) {
             VoxyWorldGenV2.LOGGER.error("failed to raw ingest section", e);
         }
@@ -135,8 +153,11 @@ public final class VoxyIntegration {
         rawIngest(level, section, cx, cy, cz, null, skyLight);
     }
 
+    public static boolean isRawIngestAvailable() {
+        return Handles.RAW_INGEST != null && VoxyWorldIds.isAvailable();
+    }
+
     public static boolean isVoxyAvailable() {
-        if (!initialized) initialize();
-        return enabled;
+        return Handles.ENABLED;
     }
 }
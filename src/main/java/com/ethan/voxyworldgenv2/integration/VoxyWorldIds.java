@@ -0,0 +1,62 @@
+package com.ethan.voxyworldgenv2.integration;
+
+import com.ethan.voxyworldgenv2.VoxyWorldGenV2;
+import net.minecraft.world.level.Level;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+// voxy world identifiers, shared by the ingest service path and the tellus ingester
+// only needs WorldIdentifier, so it works whichever of the two voxy entry points resolved
+public final class VoxyWorldIds {
+    // one identifier per level for its whole life, weak so unloaded levels are not kept around
+    private static final Map<Level, Object> worldIds = new WeakHashMap<>();
+
+    private VoxyWorldIds() {}
+
+    private static final class Handles {
+        static final MethodHandle OF;
+
+        static {
+            MethodHandle of = null;
+            try {
+                Class<?> worldIdentifierClass = Class.forName("me.cortex.voxy.commonImpl.WorldIdentifier");
+                of = MethodHandles.lookup().unreflect(worldIdentifierClass.getMethod("of", Level.class))
+                    .asType(MethodType.methodType(Object.class, Level.class));
+            } catch (ClassNotFoundException ignored) {
+            } catch (Exception e) {
+                VoxyWorldGenV2.LOGGER.warn("failed to resolve voxy world identifiers: {}", e.getMessage());
+            }
+            OF = of;
+        }
+    }
+
+    public static boolean isAvailable() {
+        return Handles.OF != null;
+    }
+
+    // null when voxy has no world for this level (yet), which is not cached so a later call can pick it up
+    public static Object of(Level level) {
+        if (Handles.OF == null) return null;
+        synchronized (worldIds) {
+            Object cached = worldIds.get(level);
+            if (cached != null) return cached;
+        }
+        Object worldId;
+        try {
+            worldId = (Object) Handles.OF.invokeExact(level);
+        } catch (Throwable e) {
+            VoxyWorldGenV2.LOGGER.error("failed to resolve voxy world for " + level.dimension(), e);
+            return null;
+        }
+        if (worldId != null) {
+            synchronized (worldIds) {
+                worldIds.put(level, worldId);
+            }
+        }
+        return worldId;
+    }
+}
@@ -0,0 +1,218 @@
+package com.ethan.voxyworldgenv2.integration.tellus;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.core.Holder;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.tags.BiomeTags;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.biome.Biomes;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.DoublePlantBlock;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.properties.DoubleBlockHalf;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+// every voxy id tellus chunks are built from, resolved once per mapper so the build loops never go through reflection
+// block ids are stored pre-composed with full light, the biome is or'ed in per column
+public final class TellusIdTable {
+    // blocks
+    public static final int STONE = 0;
+    public static final int DEEPSLATE = 1;
+    public static final int WATER = 2;
+    public static final int SNOW_BLOCK = 3;
+    public static final int GRASS_BLOCK = 4;
+    public static final int DIRT = 5;
+    public static final int SAND = 6;
+    public static final int SANDSTONE = 7;
+    public static final int GRAVEL = 8;
+    public static final int CLAY = 9;
+    public static final int RED_SAND = 10;
+    public static final int TERRACOTTA = 11;
+    public static final int MUD = 12;
+    public static final int SHORT_GRASS = 13;
+    public static final int TALL_GRASS_LOWER = 14;
+    public static final int TALL_GRASS_UPPER = 15;
+    public static final int SEAGRASS = 16;
+    public static final int TALL_SEAGRASS_LOWER = 17;
+    public static final int TALL_SEAGRASS_UPPER = 18;
+    public static final int OAK_LOG = 19;
+    public static final int OAK_LEAVES = 20;
+    public static final int BIRCH_LOG = 21;
+    public static final int BIRCH_LEAVES = 22;
+    public static final int SPRUCE_LOG = 23;
+    public static final int SPRUCE_LEAVES = 24;
+    public static final int DARK_OAK_LOG = 25;
+    public static final int DARK_OAK_LEAVES = 26;
+    public static final int JUNGLE_LOG = 27;
+    public static final int JUNGLE_LEAVES = 28;
+
+    private static final BlockState[] STATES = {
+        Blocks.STONE.defaultBlockState(),
+        Blocks.DEEPSLATE.defaultBlockState(),
+        Blocks.WATER.defaultBlockState(),
+        Blocks.SNOW_BLOCK.defaultBlockState(),
+        Blocks.GRASS_BLOCK.defaultBlockState(),
+        Blocks.DIRT.defaultBlockState(),
+        Blocks.SAND.defaultBlockState(),
+        Blocks.SANDSTONE.defaultBlockState(),
+        Blocks.GRAVEL.defaultBlockState(),
+        Blocks.CLAY.defaultBlockState(),
+        Blocks.RED_SAND.defaultBlockState(),
+        Blocks.TERRACOTTA.defaultBlockState(),
+        Blocks.MUD.defaultBlockState(),
+        Blocks.SHORT_GRASS.defaultBlockState(),
+        Blocks.TALL_GRASS.defaultBlockState().setValue(DoublePlantBlock.HALF, DoubleBlockHalf.LOWER),
+        Blocks.TALL_GRASS.defaultBlockState().setValue(DoublePlantBlock.HALF, DoubleBlockHalf.UPPER),
+        Blocks.SEAGRASS.defaultBlockState(),
+        Blocks.TALL_SEAGRASS.defaultBlockState().setValue(DoublePlantBlock.HALF, DoubleBlockHalf.LOWER),
+        Blocks.TALL_SEAGRASS.defaultBlockState().setValue(DoublePlantBlock.HALF, DoubleBlockHalf.UPPER),
+        Blocks.OAK_LOG.defaultBlockState(),
+        Blocks.OAK_LEAVES.defaultBlockState(),
+        Blocks.BIRCH_LOG.defaultBlockState(),
+        Blocks.BIRCH_LEAVES.defaultBlockState(),
+        Blocks.SPRUCE_LOG.defaultBlockState(),
+        Blocks.SPRUCE_LEAVES.defaultBlockState(),
+        Blocks.DARK_OAK_LOG.defaultBlockState(),
+        Blocks.DARK_OAK_LEAVES.defaultBlockState(),
+        Blocks.JUNGLE_LOG.defaultBlockState(),
+        Blocks.JUNGLE_LEAVES.defaultBlockState(),
+    };
+
+    // surface palettes, water rolls between gravel, clay and sand per column
+    public static final int PALETTE_GRASS = 0;
+    public static final int PALETTE_SAND = 1;
+    public static final int PALETTE_DESERT = 2;
+    public static final int PALETTE_BADLANDS = 3;
+    public static final int PALETTE_MUD = 4;
+    public static final int PALETTE_SNOWY = 5;
+    public static final int PALETTE_GRAVEL = 6;
+    public static final int PALETTE_CLAY = 7;
+    public static final int PALETTE_WATER = 8;
+
+    private static final int[] PALETTE_TOP = {GRASS_BLOCK, SAND, SAND, RED_SAND, MUD, SNOW_BLOCK, GRAVEL, CLAY};
+    private static final int[] PALETTE_FILLER = {DIRT, SAND, SANDSTONE, TERRACOTTA, MUD, DIRT, GRAVEL, CLAY};
+
+    // tree shapes, each with its log and leaves
+    public static final int TREE_OAK = 0;
+    public static final int TREE_SPRUCE = 1;
+    public static final int TREE_JUNGLE = 2;
+    public static final int TREE_BIRCH = 3;
+    public static final int TREE_DARK_OAK = 4;
+
+    private static final int[] TREE_LOG = {OAK_LOG, SPRUCE_LOG, JUNGLE_LOG, BIRCH_LOG, DARK_OAK_LOG};
+    private static final int[] TREE_LEAVES = {OAK_LEAVES, SPRUCE_LEAVES, JUNGLE_LEAVES, BIRCH_LEAVES, DARK_OAK_LEAVES};
+
+    // voxy packs biome ids into 9 bits
+    private static final int BIOME_IDS = 0x200;
+
+    private static final Map<Object, TellusIdTable> TABLES = new WeakHashMap<>();
+
+    // weak, a strong link from the value would keep its own key in TABLES alive forever
+    private final WeakReference<Object> mapper;
+    private final int[] blockIds = new int[STATES.length];
+    private final long[] baseIds = new long[STATES.length];
+    private final Reference2IntOpenHashMap<Holder<Biome>> biomeIds = new Reference2IntOpenHashMap<>();
+    private final byte[] paletteByBiome = new byte[BIOME_IDS];
+    private final byte[] treeByBiome = new byte[BIOME_IDS];
+    private final boolean[] noVegetationByBiome = new boolean[BIOME_IDS];
+
+    private TellusIdTable(Object mapper, ServerLevel level) {
+        this.mapper = new WeakReference<>(mapper);
+        for (int i = 0; i < STATES.length; i++) {
+            blockIds[i] = VoxyIngester.getBlockId(mapper, STATES[i]);
+        }
+        if (blockIds[WATER] == 0) blockIds[WATER] = VoxyIngester.getBlockId(mapper, Blocks.ICE.defaultBlockState());
+        if (blockIds[WATER] == 0) blockIds[WATER] = blockIds[STONE];
+        for (int i = 0; i < STATES.length; i++) {
+            baseIds[i] = VoxyIngester.composeId(blockIds[i], 0, 15);
+        }
+
+        biomeIds.defaultReturnValue(-1);
+        level.registryAccess().lookupOrThrow(Registries.BIOME).listElements().forEach(biome -> {
+            int id = VoxyIngester.getBiomeId(mapper, biome);
+            biomeIds.put(biome, id);
+            int index = id & (BIOME_IDS - 1);
+            paletteByBiome[index] = (byte) classifyPalette(biome);
+            treeByBiome[index] = (byte) classifyTree(biome);
+            noVegetationByBiome[index] = biome.is(BiomeTags.IS_BADLANDS) || biome.is(Biomes.DESERT);
+        });
+    }
+
+    public static TellusIdTable forMapper(Object mapper, ServerLevel level) {
+        synchronized (TABLES) {
+            return TABLES.computeIfAbsent(mapper, m -> new TellusIdTable(m, level));
+        }
+    }
+
+    private static int classifyPalette(Holder<Biome> biome) {
+        if (biome.is(BiomeTags.IS_OCEAN) || biome.is(BiomeTags.IS_RIVER)) return PALETTE_WATER;
+        if (biome.is(Biomes.DESERT)) return PALETTE_DESERT;
+        if (biome.is(BiomeTags.IS_BEACH)) return PALETTE_SAND;
+        if (biome.is(BiomeTags.IS_BADLANDS)) return PALETTE_BADLANDS;
+        if (biome.is(Biomes.MANGROVE_SWAMP)) return PALETTE_MUD;
+        if (biome.is(Biomes.SNOWY_PLAINS) || biome.is(Biomes.SNOWY_TAIGA)) return PALETTE_SNOWY;
+        return PALETTE_GRASS;
+    }
+
+    private static int classifyTree(Holder<Biome> biome) {
+        if (biome.is(BiomeTags.IS_TAIGA) ||
+                biome.is(Biomes.GROVE) ||
+                biome.is(Biomes.SNOWY_SLOPES) ||
+                biome.is(Biomes.FROZEN_PEAKS) ||
+                biome.is(Biomes.WINDSWEPT_HILLS) ||
+                biome.is(Biomes.WINDSWEPT_GRAVELLY_HILLS)) return TREE_SPRUCE;
+        if (biome.is(BiomeTags.IS_JUNGLE)) return TREE_JUNGLE;
+        if (biome.is(Biomes.BIRCH_FOREST) || biome.is(Biomes.OLD_GROWTH_BIRCH_FOREST)) return TREE_BIRCH;
+        if (biome.is(Biomes.DARK_FOREST)) return TREE_DARK_OAK;
+        return TREE_OAK;
+    }
+
+    // biomes from outside the registry snapshot fall back to the mapper, and then look like plains
+    public int biomeId(Holder<Biome> biome) {
+        int id = biomeIds.getInt(biome);
+        if (id >= 0) return id;
+        Object m = mapper.get();
+        return m != null ? VoxyIngester.getBiomeId(m, biome) : 0;
+    }
+
+    public int blockId(int block) {
+        return blockIds[block];
+    }
+
+    // VoxyIngester.composeId with full light, without looking the block up again
+    public long id(int block, int biomeId) {
+        return VoxyIngester.withBiome(baseIds[block], biomeId);
+    }
+
+    public int palette(int biomeId) {
+        return paletteByBiome[biomeId & (BIOME_IDS - 1)];
+    }
+
+    public static int paletteTop(int palette) {
+        return PALETTE_TOP[palette];
+    }
+
+    public static int paletteFiller(int palette) {
+        return PALETTE_FILLER[palette];
+    }
+
+    public boolean allowsVegetation(int biomeId) {
+        return !noVegetationByBiome[biomeId & (BIOME_IDS - 1)];
+    }
+
+    public int tree(int biomeId) {
+        return treeByBiome[biomeId & (BIOME_IDS - 1)];
+    }
+
+    public static int treeLog(int tree) {
+        return TREE_LOG[tree];
+    }
+
+    public static int treeLeaves(int tree) {
+        return TREE_LEAVES[tree];
+    }
+}
@@ -1,21 +1,21 @@
 package com.ethan.voxyworldgenv2.integration.tellus;
 
 import com.ethan.voxyworldgenv2.VoxyWorldGenV2;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Holder;
 import net.minecraft.core.QuartPos;
 import net.minecraft.server.level.ServerLevel;
-import net.minecraft.tags.BiomeTags;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.biome.Biome;
 import net.minecraft.world.level.biome.BiomeSource;
-import net.minecraft.world.level.biome.Biomes;
 import net.minecraft.world.level.biome.Climate;
-import net.minecraft.world.level.block.Blocks;
-import net.minecraft.world.level.block.state.BlockState;
+import java.lang.management.ManagementFactory;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class TellusIntegration {
     private static boolean initialized = false;
@@ -72,23 +72,71 @@ public final class TellusIntegration {
         });
     }
 
-    private record Palette(BlockState top, BlockState filler) {}
-
-    private static Palette getPalette(Holder<Biome> biome, Random random) {
-        if (biome != null) {
-            if (biome.is(BiomeTags.IS_OCEAN) || biome.is(BiomeTags.IS_RIVER)) {
-                int roll = random.nextInt(100);
-                if (roll < 10) return new Palette(Blocks.GRAVEL.defaultBlockState(), Blocks.GRAVEL.defaultBlockState());
-                if (roll < 15) return new Palette(Blocks.CLAY.defaultBlockState(), Blocks.CLAY.defaultBlockState());
-                return new Palette(Blocks.SAND.defaultBlockState(), Blocks.SAND.defaultBlockState());
+    // one padded grid for the whole batch, each chunk is built from it and completed on its own
+    public static void enqueueGenerateBatch(ServerLevel level, List<ChunkPos> batch, java.util.function.Consumer<ChunkPos> onComplete) {
+        List<ChunkPos> claimed = new ArrayList<>(batch.size());
+        for (ChunkPos pos : batch) {
+            if (workerPool != null && buildingChunks.add(pos)) {
+                claimed.add(pos);
+            } else if (onComplete != null) {
+                onComplete.accept(pos);
+            }
+        }
+        if (claimed.isEmpty()) return;
+        workerPool.execute(() -> {
+            int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+            for (ChunkPos pos : claimed) {
+                TellusSampler.prefetch(level, pos);
+                minX = Math.min(minX, pos.x);
+                minZ = Math.min(minZ, pos.z);
+                maxX = Math.max(maxX, pos.x);
+                maxZ = Math.max(maxZ, pos.z);
+            }
+            TellusSampler.SampleGrid grid = TellusSampler.sampleGrid(level, minX, minZ, maxX, maxZ);
+            for (ChunkPos pos : claimed) {
+                try {
+                    TellusSampler.TellusChunkData data = TellusSampler.sample(level, pos, grid);
+                    if (data != null) {
+                        buildAndIngest(level, pos, data);
+                    }
+                } finally {
+                    buildingChunks.remove(pos);
+                    if (onComplete != null) onComplete.accept(pos);
+                }
             }
-            if (biome.is(Biomes.DESERT)) return new Palette(Blocks.SAND.defaultBlockState(), Blocks.SANDSTONE.defaultBlockState());
-            if (biome.is(BiomeTags.IS_BEACH)) return new Palette(Blocks.SAND.defaultBlockState(), Blocks.SAND.defaultBlockState());
-            if (biome.is(BiomeTags.IS_BADLANDS)) return new Palette(Blocks.RED_SAND.defaultBlockState(), Blocks.TERRACOTTA.defaultBlockState());
-            if (biome.is(Biomes.MANGROVE_SWAMP)) return new Palette(Blocks.MUD.defaultBlockState(), Blocks.MUD.defaultBlockState());
-            if (biome.is(Biomes.SNOWY_PLAINS) || biome.is(Biomes.SNOWY_TAIGA)) return new Palette(Blocks.SNOW_BLOCK.defaultBlockState(), Blocks.DIRT.defaultBlockState());
+        });
+    }
+
+    // every placed prop is lit, so a composed id is never zero
+    private static final long NO_PROP = 0L;
+
+    // heap allocated by the build threads while assembling chunks, when the jvm can tell us
+    private static final AtomicLong allocatedBytes = new AtomicLong(0);
+    private static final AtomicLong builtChunks = new AtomicLong(0);
+
+    private static long threadAllocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean.getCurrentThreadAllocatedBytes();
         }
-        return new Palette(Blocks.GRASS_BLOCK.defaultBlockState(), Blocks.DIRT.defaultBlockState());
+        return -1;
+    }
+
+    public static double getAllocatedBytesPerChunk() {
+        long chunks = builtChunks.get();
+        return chunks == 0 ? 0 : (double) allocatedBytes.get() / chunks;
+    }
+
+    public static void resetStats() {
+        allocatedBytes.set(0);
+        builtChunks.set(0);
+    }
+
+    // ocean and river floors are mostly sand with patches of gravel and clay
+    private static int rollWaterPalette(Random random) {
+        int roll = random.nextInt(100);
+        if (roll < 10) return TellusIdTable.PALETTE_GRAVEL;
+        if (roll < 15) return TellusIdTable.PALETTE_CLAY;
+        return TellusIdTable.PALETTE_SAND;
     }
 
     public static long seedFromCoords(int x, int y, int z) {
@@ -99,6 +147,18 @@ public final class TellusIntegration {
 
     private static void buildAndIngest(ServerLevel level, ChunkPos pos, TellusSampler.TellusChunkData data) {
         if (!VoxyIngester.isAvailable()) return;
+        long allocatedBefore = threadAllocatedBytes();
+        try {
+            build(level, pos, data);
+        } finally {
+            if (allocatedBefore >= 0) {
+                allocatedBytes.addAndGet(threadAllocatedBytes() - allocatedBefore);
+                builtChunks.incrementAndGet();
+            }
+        }
+    }
+
+    private static void build(ServerLevel level, ChunkPos pos, TellusSampler.TellusChunkData data) {
         try {
             Object voxy = VoxyIngester.getVoxyInstance();
             if (voxy == null) return;
@@ -106,6 +166,7 @@ public final class TellusIntegration {
             if (engine == null) return;
             Object mapper = VoxyIngester.getMapper(engine);
             if (mapper == null) return;
+            TellusIdTable ids = TellusIdTable.forMapper(mapper, level);
 
             BiomeSource biomeSource = level.getChunkSource().getGenerator().getBiomeSource();
             Climate.Sampler sampler = level.getChunkSource().randomState().sampler();
@@ -113,12 +174,8 @@ public final class TellusIntegration {
             int minX = pos.getMinBlockX();
             int minZ = pos.getMinBlockZ();
             
-            Map<Integer, Holder<Biome>> biomeIdToHolder = new HashMap<>();
-            Map<Holder<Biome>, Integer> biomeHolderToId = new IdentityHashMap<>();
             Random random = new Random(pos.toLong());
-
-            int grassId_Voxy = VoxyIngester.getBlockId(mapper, Blocks.GRASS_BLOCK);
-            int sandId_Voxy = VoxyIngester.getBlockId(mapper, Blocks.SAND);
+            int grassId = ids.blockId(TellusIdTable.GRASS_BLOCK);
 
             int seaLevel = data.seaLevel();
             int[] heights = data.heights();
@@ -135,12 +192,6 @@ public final class TellusIntegration {
             long[] colDeepIds = new long[256];
             long[] colWaterIds = new long[256];
 
-            int stoneId = VoxyIngester.getBlockId(mapper, Blocks.STONE.defaultBlockState());
-            int deepId = VoxyIngester.getBlockId(mapper, Blocks.DEEPSLATE.defaultBlockState());
-            int waterId = VoxyIngester.getBlockId(mapper, Blocks.WATER.defaultBlockState());
-            if (waterId == 0) waterId = VoxyIngester.getBlockId(mapper, Blocks.ICE.defaultBlockState());
-            if (waterId == 0) waterId = stoneId;
-
             // pre-calculate a slightly larger water grid to avoid cliffs at chunk boundaries
             // this allows the shoreline check to see past the 16x16 area
             boolean[] expandedWater = new boolean[24 * 24];
@@ -150,8 +201,8 @@ public final class TellusIntegration {
                     if (dx >= 0 && dx < 16 && dz >= 0 && dz < 16) {
                         expandedWater[idx] = hasWaters[dz << 4 | dx];
                     } else {
-                        // sample neighboring cover data to determine water status outside local 16x16
-                        int c = TellusSampler.sampleCoverClass(level, minX + dx, minZ + dz);
+                        // neighboring cover data from the padding ring determines water status outside local 16x16
+                        int c = data.grid().coverAt(minX + dx, minZ + dz);
                         expandedWater[idx] = (c == 80 || c == 0); // 80 is water, 0 is no-data/ocean
                     }
                 }
@@ -205,12 +256,7 @@ public final class TellusIntegration {
                 }
 
                 Holder<Biome> biome = biomeSource.getNoiseBiome(QuartPos.fromBlock(wx), QuartPos.fromBlock(h), QuartPos.fromBlock(wz), sampler);
-                int bId = biomeHolderToId.computeIfAbsent(biome, b -> {
-                    int id = VoxyIngester.getBiomeId(mapper, b);
-                    biomeIdToHolder.put(id, b);
-                    return id;
-                });
-                biomeIds[i] = bId;
+                biomeIds[i] = ids.biomeId(biome);
             }
 
             // pass 2: apply surface rules
@@ -219,13 +265,13 @@ public final class TellusIntegration {
                 int c = cover[i] & 0xFF;
                 int slope = slopes[i] & 0xFF;
                 int bId = biomeIds[i];
-                Holder<Biome> biome = biomeIdToHolder.get(bId);
                 
-                Palette p = getPalette(biome, random);
+                int palette = ids.palette(bId);
+                if (palette == TellusIdTable.PALETTE_WATER) palette = rollWaterPalette(random);
 
-                colStoneIds[i] = VoxyIngester.composeId(stoneId, bId, 15);
-                colDeepIds[i] = VoxyIngester.composeId(deepId, bId, 15);
-                colWaterIds[i] = VoxyIngester.composeId(waterId, bId, 15);
+                colStoneIds[i] = ids.id(TellusIdTable.STONE, bId);
+                colDeepIds[i] = ids.id(TellusIdTable.DEEPSLATE, bId);
+                colWaterIds[i] = ids.id(TellusIdTable.WATER, bId);
 
                 boolean isStony = slope >= 3 && h >= 0;
                 boolean isSnowIce = (c == 70); // ESA_SNOW_ICE
@@ -235,23 +281,22 @@ public final class TellusIntegration {
                     colFillerIds[i] = colStoneIds[i];
                     vegAllowed[i] = false;
                 } else if (isSnowIce) {
-                    colTopIds[i] = VoxyIngester.composeId(VoxyIngester.getBlockId(mapper, Blocks.SNOW_BLOCK), bId, 15);
+                    colTopIds[i] = ids.id(TellusIdTable.SNOW_BLOCK, bId);
                     colFillerIds[i] = colDeepIds[i];
                     vegAllowed[i] = false;
                 } else {
-                    int topBlockId = VoxyIngester.getBlockId(mapper, p.top);
-                    colTopIds[i] = VoxyIngester.composeId(topBlockId, bId, 15);
-                    colFillerIds[i] = VoxyIngester.composeId(VoxyIngester.getBlockId(mapper, p.filler), bId, 15);
-                    vegAllowed[i] = (topBlockId == grassId_Voxy) && 
-                                    (biome == null || (!biome.is(BiomeTags.IS_BADLANDS) && !biome.is(Biomes.DESERT))) && 
-                                    !hasWaters[i];
+                    int top = TellusIdTable.paletteTop(palette);
+                    colTopIds[i] = ids.id(top, bId);
+                    colFillerIds[i] = ids.id(TellusIdTable.paletteFiller(palette), bId);
+                    vegAllowed[i] = (ids.blockId(top) == grassId) && ids.allowsVegetation(bId) && !hasWaters[i];
                 }
             }
 
-            Map<BlockPos, Long> propBlocks = new HashMap<>();
-            TellusWorldFeatures.placeProceduralTrees(level, pos, data, mapper, propBlocks, biomeIds, biomeSource, sampler, waterHeads);
-            TellusWorldFeatures.placeVegetation(pos, data, mapper, propBlocks, biomeIds, vegAllowed);
-            TellusWorldFeatures.placeUnderwaterVegetation(pos, data, mapper, propBlocks, biomeIds, hasWaters);
+            Long2LongOpenHashMap propBlocks = new Long2LongOpenHashMap();
+            propBlocks.defaultReturnValue(NO_PROP);
+            TellusWorldFeatures.placeProceduralTrees(level, pos, data, ids, propBlocks, biomeSource, sampler, waterHeads);
+            TellusWorldFeatures.placeVegetation(pos, data, ids, propBlocks, biomeIds, vegAllowed);
+            TellusWorldFeatures.placeUnderwaterVegetation(pos, data, ids, propBlocks, biomeIds, hasWaters);
 
             long brightAir = VoxyIngester.composeId(0, 0, 15);
             int minSY = level.getMinSectionY();
@@ -260,7 +305,15 @@ public final class TellusIntegration {
             int maxHV = -64;
             for (int h : heights) if (h > maxHV) maxHV = h;
             for (int i = 0; i < 256; i++) if (hasWaters[i] && waterHeads[i] > maxHV) maxHV = waterHeads[i];
-            for (BlockPos p : propBlocks.keySet()) if (p.getY() > maxHV) maxHV = p.getY();
+            // props only ever sit in this y range, the fill loop skips the lookup everywhere else
+            int minPropY = Integer.MAX_VALUE;
+            int maxPropY = Integer.MIN_VALUE;
+            for (LongIterator it = propBlocks.keySet().iterator(); it.hasNext(); ) {
+                int y = BlockPos.getY(it.nextLong());
+                if (y < minPropY) minPropY = y;
+                if (y > maxPropY) maxPropY = y;
+            }
+            if (maxPropY > maxHV) maxHV = maxPropY;
 
             for (int sy = 0; sy < sCount; sy++) {
                 int sY = minSY + sy;
@@ -273,7 +326,6 @@ public final class TellusIntegration {
                 Arrays.fill(dataArray, brightAir);
 
                 int nAir = 0;
-                BlockPos.MutableBlockPos cursor = new BlockPos.MutableBlockPos();
                 for (int i = 0; i < 4096; i++) {
                     int ly = (i >> 8) & 15;
                     int lz = (i >> 4) & 15;
@@ -294,10 +346,9 @@ public final class TellusIntegration {
                     } else if (isWater) {
                         dataArray[i] = colWaterIds[col];
                         nAir++;
-                    } else {
-                        cursor.set(wX, wY, wZ);
-                        Long propId = propBlocks.get(cursor);
-                        if (propId != null) {
+                    } else if (wY >= minPropY && wY <= maxPropY) {
+                        long propId = propBlocks.get(BlockPos.asLong(wX, wY, wZ));
+                        if (propId != NO_PROP) {
                             dataArray[i] = propId;
                             if (propId != brightAir) nAir++;
                         }
@@ -11,6 +11,7 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicLong;
 
 // reflective access to tellus
 public final class TellusSampler {
@@ -139,24 +140,133 @@ public final class TellusSampler {
         } catch (Throwable ignored) {}
     }
 
-    public record TellusChunkData(int[] heights, byte[] coverClasses, byte[] slopes, boolean[] hasWater, int[] waterSurfaces, int seaLevel) {}
+    public record TellusChunkData(int[] heights, byte[] coverClasses, byte[] slopes, boolean[] hasWater, int[] waterSurfaces, int seaLevel, SampleGrid grid) {}
 
-    public static TellusChunkData sample(ServerLevel level, ChunkPos pos) {
+    // slopes look this far out, so a grid needs this much extra around its chunks
+    public static final int GRID_PADDING = 4;
+
+    // reflective source samples (land mask, land cover, elevation) and the chunks they were taken for
+    private static final AtomicLong sampleCalls = new AtomicLong(0);
+    private static final AtomicLong sampledChunks = new AtomicLong(0);
+
+    // resolved once per grid instead of once per pixel
+    private record Sources(Object elevation, Object landCover, Object landMask, Object waterResolver, TellusTileCache.Scale scale, int seaLevel) {
+        double worldScale() { return scale.worldScale(); }
+        int heightOffset() { return scale.heightOffset(); }
+    }
+
+    private static Sources resolveSources(ServerLevel level) throws Throwable {
+        Object generator = level.getChunkSource().getGenerator();
+        Object settings = getSettingsMethod.invoke(generator);
+        return new Sources(
+                elevationSourceField.get(null),
+                landCoverSourceField.get(null),
+                landMaskSourceField.get(null),
+                waterResolverField.get(generator),
+                new TellusTileCache.Scale(
+                        (double) worldScaleHandle.invoke(settings),
+                        (double) terrestrialHeightScaleHandle.invoke(settings),
+                        (double) oceanicHeightScaleHandle.invoke(settings),
+                        (int) heightOffsetHandle.invoke(settings)),
+                (int) resolveSeaLevelHandle.invoke(settings));
+    }
+
+    // heights and cover classes for a block of chunks plus the padding ring, filled in one go
+    // anything asked for outside the grid goes to the tile cache directly
+    public static final class SampleGrid {
+        private final Sources sources;
+        private final int originX;
+        private final int originZ;
+        private final int sizeX;
+        private final int sizeZ;
+        private final int[] heights;
+        private final byte[] cover;
+
+        private SampleGrid(Sources sources, int originX, int originZ, int sizeX, int sizeZ) {
+            this.sources = sources;
+            this.originX = originX;
+            this.originZ = originZ;
+            this.sizeX = sizeX;
+            this.sizeZ = sizeZ;
+            this.heights = new int[sizeX * sizeZ];
+            this.cover = new byte[sizeX * sizeZ];
+        }
+
+        private int index(int worldX, int worldZ) {
+            int x = worldX - originX;
+            int z = worldZ - originZ;
+            return (x >= 0 && x < sizeX && z >= 0 && z < sizeZ) ? z * sizeX + x : -1;
+        }
+
+        public int coverAt(int worldX, int worldZ) {
+            int i = index(worldX, worldZ);
+            if (i >= 0) return cover[i] & 0xFF;
+            return cachedCover(sources, worldX, worldZ);
+        }
+
+        public int heightAt(int worldX, int worldZ) {
+            int i = index(worldX, worldZ);
+            if (i >= 0) return heights[i];
+            return cachedHeight(sources, worldX, worldZ);
+        }
+    }
+
+    // the chunks' own tiles are sampled once and shared with every later grid that overlaps them
+    // the padding ring only takes a few pixels of each neighbouring tile, so those come from the cache or the sources directly
+    public static SampleGrid sampleGrid(ServerLevel level, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
         if (!isTellusPresent()) return null;
+        try {
+            Sources sources = resolveSources(level);
+            int originX = (minChunkX << 4) - GRID_PADDING;
+            int originZ = (minChunkZ << 4) - GRID_PADDING;
+            int sizeX = ((maxChunkX - minChunkX + 1) << 4) + 2 * GRID_PADDING;
+            int sizeZ = ((maxChunkZ - minChunkZ + 1) << 4) + 2 * GRID_PADDING;
+            SampleGrid grid = new SampleGrid(sources, originX, originZ, sizeX, sizeZ);
+            TellusTileCache cache = TellusTileCache.getInstance();
+            // walk the tiles the grid overlaps and copy the overlapping rows
+            int shift = TellusTileCache.TILE_SHIFT;
+            for (int tileZ = originZ >> shift; tileZ <= (originZ + sizeZ - 1) >> shift; tileZ++) {
+                for (int tileX = originX >> shift; tileX <= (originX + sizeX - 1) >> shift; tileX++) {
+                    int fromX = Math.max(originX, tileX << shift);
+                    int toX = Math.min(originX + sizeX, (tileX + 1) << shift);
+                    int fromZ = Math.max(originZ, tileZ << shift);
+                    int toZ = Math.min(originZ + sizeZ, (tileZ + 1) << shift);
+                    boolean inside = tileX >= minChunkX && tileX <= maxChunkX && tileZ >= minChunkZ && tileZ <= maxChunkZ;
+                    TellusTileCache.Tile tile = inside ? tile(sources, tileX, tileZ) : cache.get(sources.scale(), tileX, tileZ);
+                    if (tile == null) {
+                        for (int worldZ = fromZ; worldZ < toZ; worldZ++) {
+                            for (int worldX = fromX; worldX < toX; worldX++) {
+                                samplePixel(sources, worldX, worldZ, grid.heights, grid.cover, (worldZ - originZ) * sizeX + (worldX - originX));
+                            }
+                        }
+                        continue;
+                    }
+                    for (int worldZ = fromZ; worldZ < toZ; worldZ++) {
+                        int src = tileIndex(fromX, worldZ);
+                        int dst = (worldZ - originZ) * sizeX + (fromX - originX);
+                        System.arraycopy(tile.heights(), src, grid.heights, dst, toX - fromX);
+                        System.arraycopy(tile.cover(), src, grid.cover, dst, toX - fromX);
+                    }
+                }
+            }
+            return grid;
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    public static TellusChunkData sample(ServerLevel level, ChunkPos pos) {
+        return sample(level, pos, sampleGrid(level, pos.x, pos.z, pos.x, pos.z));
+    }
+
+    // the grid must cover this chunk and its padding, see sampleGrid
+    public static TellusChunkData sample(ServerLevel level, ChunkPos pos, SampleGrid grid) {
+        if (grid == null || !isTellusPresent()) return null;
 
         try {
-            Object generator = level.getChunkSource().getGenerator();
-            Object settings = getSettingsMethod.invoke(generator);
-            Object elevationSource = elevationSourceField.get(null);
-            Object landCoverSource = landCoverSourceField.get(null);
-            Object landMaskSource = landMaskSourceField.get(null);
-            Object waterResolver = waterResolverField.get(generator);
-
-            double worldScale = (double) worldScaleHandle.invoke(settings);
-            double terrestrialHeightScale = (double) terrestrialHeightScaleHandle.invoke(settings);
-            double oceanicHeightScale = (double) oceanicHeightScaleHandle.invoke(settings);
-            int heightOffset = (int) heightOffsetHandle.invoke(settings);
-            int seaLevel = (int) resolveSeaLevelHandle.invoke(settings);
+            Sources sources = grid.sources;
+            int heightOffset = sources.heightOffset();
+            int seaLevel = sources.seaLevel();
 
             int[] heights = new int[256];
             byte[] coverClasses = new byte[256];
@@ -167,7 +277,7 @@ public final class TellusSampler {
             int minBlockX = pos.getMinBlockX();
             int minBlockZ = pos.getMinBlockZ();
 
-            Object waterData = resolveChunkWaterDataMethod.invoke(waterResolver, pos.x, pos.z);
+            Object waterData = resolveChunkWaterDataMethod.invoke(sources.waterResolver(), pos.x, pos.z);
 
             for (int i = 0; i < 256; i++) {
                 int z = i >> 4;
@@ -182,14 +292,14 @@ public final class TellusSampler {
                     heights[i] = terrainH;
                     hasWaters[i] = hWater;
                     waterSurfaces[i] = waterH;
-                    coverClasses[i] = (byte) (int) sampleCoverClassMethod.invoke(landCoverSource, (double) worldX, (double) worldZ, worldScale);
+                    coverClasses[i] = (byte) grid.coverAt(worldX, worldZ);
 
                     // sampling slopes with step 4
-                    int step = 4;
-                    int hE = samplePixelHeight(elevationSource, landCoverSource, landMaskSource, worldScale, terrestrialHeightScale, oceanicHeightScale, heightOffset, worldX + step, worldZ);
-                    int hW = samplePixelHeight(elevationSource, landCoverSource, landMaskSource, worldScale, terrestrialHeightScale, oceanicHeightScale, heightOffset, worldX - step, worldZ);
-                    int hN = samplePixelHeight(elevationSource, landCoverSource, landMaskSource, worldScale, terrestrialHeightScale, oceanicHeightScale, heightOffset, worldX, worldZ - step);
-                    int hS = samplePixelHeight(elevationSource, landCoverSource, landMaskSource, worldScale, terrestrialHeightScale, oceanicHeightScale, heightOffset, worldX, worldZ + step);
+                    int step = GRID_PADDING;
+                    int hE = grid.heightAt(worldX + step, worldZ);
+                    int hW = grid.heightAt(worldX - step, worldZ);
+                    int hN = grid.heightAt(worldX, worldZ - step);
+                    int hS = grid.heightAt(worldX, worldZ + step);
                     
                     int maxDiff = Math.max(
                             Math.max(Math.abs(hE - terrainH), Math.abs(hW - terrainH)),
@@ -204,42 +314,114 @@ public final class TellusSampler {
                     waterSurfaces[i] = seaLevel;
                 }
             }
-            return new TellusChunkData(heights, coverClasses, slopes, hasWaters, waterSurfaces, seaLevel);
+            sampledChunks.incrementAndGet();
+            return new TellusChunkData(heights, coverClasses, slopes, hasWaters, waterSurfaces, seaLevel, grid);
         } catch (Throwable e) {
             return null;
         }
     }
 
-    private static int samplePixelHeight(Object elevationSource, Object landCoverSource, Object landMaskSource, double worldScale, double terrestrialHeightScale, double oceanicHeightScale, int heightOffset, int worldX, int worldZ) throws Throwable {
+    private static int tileIndex(int worldX, int worldZ) {
+        int mask = TellusTileCache.TILE_SIZE - 1;
+        return (worldZ & mask) * TellusTileCache.TILE_SIZE + (worldX & mask);
+    }
+
+    // with the cache turned off a single pixel is sampled on its own instead of its whole tile
+    private static int cachedHeight(Sources sources, int worldX, int worldZ) {
+        if (!TellusTileCache.getInstance().isEnabled()) {
+            int[] height = new int[1];
+            samplePixel(sources, worldX, worldZ, height, new byte[1], 0);
+            return height[0];
+        }
+        return tile(sources, worldX >> TellusTileCache.TILE_SHIFT, worldZ >> TellusTileCache.TILE_SHIFT).heights()[tileIndex(worldX, worldZ)];
+    }
+
+    private static int cachedCover(Sources sources, int worldX, int worldZ) {
+        if (!TellusTileCache.getInstance().isEnabled()) return pixelCover(sources, worldX, worldZ);
+        return tile(sources, worldX >> TellusTileCache.TILE_SHIFT, worldZ >> TellusTileCache.TILE_SHIFT).cover()[tileIndex(worldX, worldZ)] & 0xFF;
+    }
+
+    private static TellusTileCache.Tile tile(Sources sources, int tileX, int tileZ) {
+        TellusTileCache cache = TellusTileCache.getInstance();
+        TellusTileCache.Tile tile = cache.get(sources.scale(), tileX, tileZ);
+        if (tile == null) {
+            tile = new TellusTileCache.Tile();
+            // a failed sample is filled with defaults, those tiles are sampled again next time instead of cached
+            if (sampleTile(sources, tileX, tileZ, tile)) cache.put(sources.scale(), tileX, tileZ, tile);
+        }
+        return tile;
+    }
+
+    // false when any pixel fell back to defaults
+    private static boolean sampleTile(Sources sources, int tileX, int tileZ, TellusTileCache.Tile tile) {
+        int minX = tileX << TellusTileCache.TILE_SHIFT;
+        int minZ = tileZ << TellusTileCache.TILE_SHIFT;
+        boolean complete = true;
+        for (int z = 0; z < TellusTileCache.TILE_SIZE; z++) {
+            for (int x = 0; x < TellusTileCache.TILE_SIZE; x++) {
+                complete &= samplePixel(sources, minX + x, minZ + z, tile.heights(), tile.cover(), z * TellusTileCache.TILE_SIZE + x);
+            }
+        }
+        return complete;
+    }
+
+    // cover first since the height of non-land pixels depends on it, false when either sample failed
+    private static boolean samplePixel(Sources sources, int worldX, int worldZ, int[] heights, byte[] cover, int i) {
+        boolean complete = true;
+        int coverClass;
+        try {
+            coverClass = sampleCover(sources, worldX, worldZ);
+        } catch (Throwable e) {
+            coverClass = ESA_NO_DATA;
+            complete = false;
+        }
+        cover[i] = (byte) coverClass;
+        try {
+            heights[i] = samplePixelHeight(sources, worldX, worldZ, coverClass);
+        } catch (Throwable e) {
+            heights[i] = sources.heightOffset();
+            complete = false;
+        }
+        return complete;
+    }
+
+    private static int pixelCover(Sources sources, int worldX, int worldZ) {
+        try {
+            return sampleCover(sources, worldX, worldZ);
+        } catch (Throwable e) {
+            return ESA_NO_DATA;
+        }
+    }
+
+    private static int sampleCover(Sources sources, int worldX, int worldZ) throws Throwable {
+        sampleCalls.incrementAndGet();
+        return (int) sampleCoverClassMethod.invoke(sources.landCover(), (double) worldX, (double) worldZ, sources.worldScale());
+    }
+
+    // the cover class is only looked at where the land mask says water or does not know
+    private static int samplePixelHeight(Sources sources, int worldX, int worldZ, int coverClass) throws Throwable {
+        double worldScale = sources.worldScale();
         boolean oceanZoom = true;
-        Object landSample = sampleLandMaskMethod.invoke(landMaskSource, (double) worldX, (double) worldZ, worldScale);
+        sampleCalls.incrementAndGet();
+        Object landSample = sampleLandMaskMethod.invoke(sources.landMask(), (double) worldX, (double) worldZ, worldScale);
         if ((boolean) landMaskSampleKnownMethod.invoke(landSample)) {
             if ((boolean) landMaskSampleLandMethod.invoke(landSample)) {
                 oceanZoom = false;
             } else {
-                int coverClass = (int) sampleCoverClassMethod.invoke(landCoverSource, (double) worldX, (double) worldZ, worldScale);
                 oceanZoom = (coverClass == ESA_NO_DATA || coverClass == ESA_WATER);
             }
         }
-        double elevation = (double) sampleElevationMetersMethod.invoke(elevationSource, (double) worldX, (double) worldZ, worldScale, oceanZoom);
-        double heightScale = (elevation >= 0.0) ? terrestrialHeightScale : oceanicHeightScale;
+        sampleCalls.incrementAndGet();
+        double elevation = (double) sampleElevationMetersMethod.invoke(sources.elevation(), (double) worldX, (double) worldZ, worldScale, oceanZoom);
+        double heightScale = (elevation >= 0.0) ? sources.scale().terrestrialHeightScale() : sources.scale().oceanicHeightScale();
         double scaled = (elevation * heightScale) / worldScale;
-        return ((elevation >= 0.0) ? Mth.ceil(scaled) : Mth.floor(scaled)) + heightOffset;
+        return ((elevation >= 0.0) ? Mth.ceil(scaled) : Mth.floor(scaled)) + sources.heightOffset();
     }
 
     public static int sampleHeightOnly(ServerLevel level, int worldX, int worldZ) {
         if (!isTellusPresent()) return 64;
         try {
-            Object generator = level.getChunkSource().getGenerator();
-            Object settings = getSettingsMethod.invoke(generator);
-            Object elevationSource = elevationSourceField.get(null);
-            Object landCoverSource = landCoverSourceField.get(null);
-            Object landMaskSource = landMaskSourceField.get(null);
-            double worldScale = (double) worldScaleHandle.invoke(settings);
-            double terrestrialHeightScale = (double) terrestrialHeightScaleHandle.invoke(settings);
-            double oceanicHeightScale = (double) oceanicHeightScaleHandle.invoke(settings);
-            int heightOffset = (int) heightOffsetHandle.invoke(settings);
-            return samplePixelHeight(elevationSource, landCoverSource, landMaskSource, worldScale, terrestrialHeightScale, oceanicHeightScale, heightOffset, worldX, worldZ);
+            return cachedHeight(resolveSources(level), worldX, worldZ);
         } catch (Throwable e) {
             return 64;
         }
@@ -248,13 +430,22 @@ public final class TellusSampler {
     public static int sampleCoverClass(ServerLevel level, int worldX, int worldZ) {
         if (!isTellusPresent()) return 0;
         try {
-            Object generator = level.getChunkSource().getGenerator();
-            Object settings = getSettingsMethod.invoke(generator);
-            Object landCoverSource = landCoverSourceField.get(null);
-            double worldScale = (double) worldScaleHandle.invoke(settings);
-            return (int) sampleCoverClassMethod.invoke(landCoverSource, (double) worldX, (double) worldZ, worldScale);
+            return cachedCover(resolveSources(level), worldX, worldZ);
         } catch (Throwable e) {
             return 0;
         }
     }
+
+    public static long getSampleCalls() { return sampleCalls.get(); }
+    public static long getSampledChunks() { return sampledChunks.get(); }
+
+    public static double getSampleCallsPerChunk() {
+        long chunks = sampledChunks.get();
+        return chunks == 0 ? 0 : (double) sampleCalls.get() / chunks;
+    }
+
+    public static void resetStats() {
+        sampleCalls.set(0);
+        sampledChunks.set(0);
+    }
 }
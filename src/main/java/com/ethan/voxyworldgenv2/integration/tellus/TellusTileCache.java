@@ -0,0 +1,102 @@
+package com.ethan.voxyworldgenv2.integration.tellus;
+
+import com.ethan.voxyworldgenv2.core.Config;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// bounded lru of sampled tellus tiles, so neighbouring batches and tree cells stop sampling the same pixels again
+// tiles are chunk sized and hold plain arrays, sampling happens outside the lock
+public final class TellusTileCache {
+    private static final TellusTileCache INSTANCE = new TellusTileCache();
+
+    public static final int TILE_SHIFT = 4;
+    public static final int TILE_SIZE = 1 << TILE_SHIFT;
+    private static final int TILE_PIXELS = TILE_SIZE * TILE_SIZE;
+    // two arrays plus their headers, the tile, key and map node
+    private static final long TILE_BYTES = TILE_PIXELS * 4L + TILE_PIXELS + 160;
+
+    // everything a sampled height depends on besides the position
+    public record Scale(double worldScale, double terrestrialHeightScale, double oceanicHeightScale, int heightOffset) {}
+
+    private record Key(Scale scale, int tileX, int tileZ) {}
+
+    // heights and cover classes indexed z * TILE_SIZE + x
+    public record Tile(int[] heights, byte[] cover) {
+        public Tile() {
+            this(new int[TILE_PIXELS], new byte[TILE_PIXELS]);
+        }
+    }
+
+    private final LinkedHashMap<Key, Tile> tiles = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    private TellusTileCache() {}
+
+    public static TellusTileCache getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return Config.DATA.tellusTileCacheMb > 0;
+    }
+
+    public synchronized Tile get(Scale scale, int tileX, int tileZ) {
+        if (!isEnabled()) return null;
+        Tile tile = tiles.get(new Key(scale, tileX, tileZ));
+        if (tile == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return tile;
+    }
+
+    public synchronized void put(Scale scale, int tileX, int tileZ, Tile tile) {
+        if (!isEnabled()) return;
+        // two workers may sample the same tile at once, the second copy is identical
+        if (tiles.put(new Key(scale, tileX, tileZ), tile) == null) totalBytes += TILE_BYTES;
+
+        long maxBytes = Config.DATA.tellusTileCacheMb * 1024L * 1024L;
+        Iterator<Map.Entry<Key, Tile>> it = tiles.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            it.next();
+            it.remove();
+            totalBytes -= TILE_BYTES;
+        }
+    }
+
+    public synchronized void clear() {
+        tiles.clear();
+        totalBytes = 0;
+        hits.set(0);
+        misses.set(0);
+    }
+
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+}
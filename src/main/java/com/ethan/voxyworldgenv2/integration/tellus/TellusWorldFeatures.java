@@ -1,32 +1,24 @@
 package com.ethan.voxyworldgenv2.integration.tellus;
 
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Holder;
 import net.minecraft.core.QuartPos;
 import net.minecraft.server.level.ServerLevel;
-import net.minecraft.tags.BiomeTags;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.biome.Biome;
 import net.minecraft.world.level.biome.BiomeSource;
-import net.minecraft.world.level.biome.Biomes;
 import net.minecraft.world.level.biome.Climate;
-import net.minecraft.world.level.block.Blocks;
-import net.minecraft.world.level.block.DoublePlantBlock;
-import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.block.state.properties.DoubleBlockHalf;
 import java.util.*;
 
 public final class TellusWorldFeatures {
 
-    public static void placeVegetation(ChunkPos pos, TellusSampler.TellusChunkData data, Object mapper, Map<BlockPos, Long> blocks, int[] biomeIds, boolean[] vegAllowed) {
+    public static void placeVegetation(ChunkPos pos, TellusSampler.TellusChunkData data, TellusIdTable ids, Long2LongOpenHashMap blocks, int[] biomeIds, boolean[] vegAllowed) {
         Random random = new Random(pos.toLong() ^ 0x67726173);
         int minX = pos.getMinBlockX();
         int minZ = pos.getMinBlockZ();
         int[] heights = data.heights();
         
-        int grassId = VoxyIngester.getBlockId(mapper, Blocks.SHORT_GRASS);
-        int tallGrassLowerId = VoxyIngester.getBlockId(mapper, Blocks.TALL_GRASS.defaultBlockState().setValue(DoublePlantBlock.HALF, DoubleBlockHalf.LOWER));
-        int tallGrassUpperId = VoxyIngester.getBlockId(mapper, Blocks.TALL_GRASS.defaultBlockState().setValue(DoublePlantBlock.HALF, DoubleBlockHalf.UPPER));
 
         for (int i = 0; i < 256; i++) {
             if (!vegAllowed[i]) continue;
@@ -38,32 +30,29 @@ public final class TellusWorldFeatures {
                 int wx = minX + (i & 15);
                 int wz = minZ + (i >> 4);
                 if (random.nextFloat() < 0.15f) {
-                    BlockPos p1 = new BlockPos(wx, h + 1, wz);
-                    BlockPos p2 = new BlockPos(wx, h + 2, wz);
+                    long p1 = BlockPos.asLong(wx, h + 1, wz);
+                    long p2 = BlockPos.asLong(wx, h + 2, wz);
                     if (!blocks.containsKey(p1) && !blocks.containsKey(p2)) {
-                        blocks.put(p1, VoxyIngester.composeId(tallGrassLowerId, bId, 15));
-                        blocks.put(p2, VoxyIngester.composeId(tallGrassUpperId, bId, 15));
+                        blocks.put(p1, ids.id(TellusIdTable.TALL_GRASS_LOWER, bId));
+                        blocks.put(p2, ids.id(TellusIdTable.TALL_GRASS_UPPER, bId));
                     }
                 } else {
-                    BlockPos p1 = new BlockPos(wx, h + 1, wz);
+                    long p1 = BlockPos.asLong(wx, h + 1, wz);
                     if (!blocks.containsKey(p1)) {
-                        blocks.put(p1, VoxyIngester.composeId(grassId, bId, 15));
+                        blocks.put(p1, ids.id(TellusIdTable.SHORT_GRASS, bId));
                     }
                 }
             }
         }
     }
 
-    public static void placeUnderwaterVegetation(ChunkPos pos, TellusSampler.TellusChunkData data, Object mapper, Map<BlockPos, Long> blocks, int[] biomeIds, boolean[] hasWaters) {
+    public static void placeUnderwaterVegetation(ChunkPos pos, TellusSampler.TellusChunkData data, TellusIdTable ids, Long2LongOpenHashMap blocks, int[] biomeIds, boolean[] hasWaters) {
         Random random = new Random(pos.toLong() ^ 0x73656167);
         int minX = pos.getMinBlockX();
         int minZ = pos.getMinBlockZ();
         int[] heights = data.heights();
         int[] waterHeads = data.waterSurfaces();
         
-        int seagrassId = VoxyIngester.getBlockId(mapper, Blocks.SEAGRASS);
-        int tallSeagrassLowerId = VoxyIngester.getBlockId(mapper, Blocks.TALL_SEAGRASS.defaultBlockState().setValue(DoublePlantBlock.HALF, DoubleBlockHalf.LOWER));
-        int tallSeagrassUpperId = VoxyIngester.getBlockId(mapper, Blocks.TALL_SEAGRASS.defaultBlockState().setValue(DoublePlantBlock.HALF, DoubleBlockHalf.UPPER));
 
         for (int i = 0; i < 256; i++) {
             if (!hasWaters[i]) continue;
@@ -78,10 +67,10 @@ public final class TellusWorldFeatures {
                 int wz = minZ + (i >> 4);
                 
                 if (wH - h >= 3 && random.nextFloat() < 0.10f) {
-                    blocks.put(new BlockPos(wx, h + 1, wz), VoxyIngester.composeId(tallSeagrassLowerId, bId, 15));
-                    blocks.put(new BlockPos(wx, h + 2, wz), VoxyIngester.composeId(tallSeagrassUpperId, bId, 15));
+                    blocks.put(BlockPos.asLong(wx, h + 1, wz), ids.id(TellusIdTable.TALL_SEAGRASS_LOWER, bId));
+                    blocks.put(BlockPos.asLong(wx, h + 2, wz), ids.id(TellusIdTable.TALL_SEAGRASS_UPPER, bId));
                 } else {
-                    blocks.put(new BlockPos(wx, h + 1, wz), VoxyIngester.composeId(seagrassId, bId, 15));
+                    blocks.put(BlockPos.asLong(wx, h + 1, wz), ids.id(TellusIdTable.SEAGRASS, bId));
                 }
             }
         }
@@ -89,7 +78,7 @@ public final class TellusWorldFeatures {
 
 
 
-    public static void placeProceduralTrees(ServerLevel level, ChunkPos pos, TellusSampler.TellusChunkData data, Object mapper, Map<BlockPos, Long> blocks, int[] biomeIds, BiomeSource biomeSource, Climate.Sampler sampler, int[] waterHeads) {
+    public static void placeProceduralTrees(ServerLevel level, ChunkPos pos, TellusSampler.TellusChunkData data, TellusIdTable ids, Long2LongOpenHashMap blocks, BiomeSource biomeSource, Climate.Sampler sampler, int[] waterHeads) {
         int minX = pos.getMinBlockX();
         int minZ = pos.getMinBlockZ();
         long seed_base = level.getSeed();
@@ -106,9 +95,10 @@ public final class TellusWorldFeatures {
                 int wx = cx * 5 + random.nextInt(5);
                 int wz = cz * 5 + random.nextInt(5);
 
-                int coverClass = TellusSampler.sampleCoverClass(level, wx, wz);
+                // cells near the batch edge fall outside the grid and are sampled directly
+                int coverClass = data.grid().coverAt(wx, wz);
                 if (coverClass == 10 || coverClass == 95) {
-                     int surface = TellusSampler.sampleHeightOnly(level, wx, wz);
+                     int surface = data.grid().heightAt(wx, wz);
                      
                      int localWaterY = -64;
                      if (wx >= minX && wx < minX + 16 && wz >= minZ && wz < minZ + 16) {
@@ -119,47 +109,29 @@ public final class TellusWorldFeatures {
 
                      if (surface >= localWaterY) {
                          Holder<Biome> biome = biomeSource.getNoiseBiome(QuartPos.fromBlock(wx), QuartPos.fromBlock(surface), QuartPos.fromBlock(wz), sampler);
-                         int bId = VoxyIngester.getBiomeId(mapper, biome);
-                         buildProceduralTree(wx, surface + 1, wz, biome, mapper, blocks, random, bId, minX, minZ);
+                         int bId = ids.biomeId(biome);
+                         buildProceduralTree(wx, surface + 1, wz, ids, blocks, random, bId, minX, minZ);
                      }
                 }
             }
         }
     }
 
-    private static void buildProceduralTree(int x, int y, int z, Holder<Biome> biome, Object mapper, Map<BlockPos, Long> blocks, Random random, int biomeId, int minX, int minZ) {
-        boolean isSpruceBiome = biome.is(BiomeTags.IS_TAIGA) || 
-                                 biome.is(Biomes.GROVE) || 
-                                 biome.is(Biomes.SNOWY_SLOPES) || 
-                                 biome.is(Biomes.FROZEN_PEAKS) ||
-                                 biome.is(Biomes.WINDSWEPT_HILLS) ||
-                                 biome.is(Biomes.WINDSWEPT_GRAVELLY_HILLS);
-
-        if (isSpruceBiome) {
-            buildRefinedSpruce(x, y, z, mapper, blocks, random, biomeId, minX, minZ);
-        } else if (biome.is(BiomeTags.IS_JUNGLE)) {
-            buildRefinedJungle(x, y, z, mapper, blocks, random, biomeId, minX, minZ);
-        } else if (biome.is(Biomes.BIRCH_FOREST) || biome.is(Biomes.OLD_GROWTH_BIRCH_FOREST)) {
-            buildRefinedBirch(x, y, z, mapper, blocks, random, biomeId, minX, minZ);
-        } else if (biome.is(Biomes.DARK_FOREST)) {
-            buildRefinedDarkOak(x, y, z, mapper, blocks, random, biomeId, minX, minZ);
-        } else {
-            buildRefinedOak(x, y, z, mapper, blocks, random, biomeId, minX, minZ);
+    private static void buildProceduralTree(int x, int y, int z, TellusIdTable ids, Long2LongOpenHashMap blocks, Random random, int biomeId, int minX, int minZ) {
+        int tree = ids.tree(biomeId);
+        long logId = ids.id(TellusIdTable.treeLog(tree), biomeId);
+        long leafId = ids.id(TellusIdTable.treeLeaves(tree), biomeId);
+        switch (tree) {
+            case TellusIdTable.TREE_SPRUCE -> buildRefinedSpruce(x, y, z, logId, leafId, blocks, random, minX, minZ);
+            case TellusIdTable.TREE_JUNGLE -> buildRefinedJungle(x, y, z, logId, leafId, blocks, random, minX, minZ);
+            case TellusIdTable.TREE_BIRCH -> buildRefinedBirch(x, y, z, logId, leafId, blocks, random, minX, minZ);
+            case TellusIdTable.TREE_DARK_OAK -> buildRefinedDarkOak(x, y, z, logId, leafId, blocks, random, minX, minZ);
+            default -> buildRefinedOak(x, y, z, logId, leafId, blocks, random, minX, minZ);
         }
     }
 
-    private static long getLeafId(Object mapper, BlockState state, int bId) {
-        return VoxyIngester.composeId(VoxyIngester.getBlockId(mapper, state), bId, 15);
-    }
-
-    private static long getLogId(Object mapper, BlockState state, int bId) {
-        return VoxyIngester.composeId(VoxyIngester.getBlockId(mapper, state), bId, 15);
-    }
-
-    private static void buildRefinedOak(int x, int y, int z, Object mapper, Map<BlockPos, Long> blocks, Random random, int bId, int minX, int minZ) {
+    private static void buildRefinedOak(int x, int y, int z, long logId, long leafId, Long2LongOpenHashMap blocks, Random random, int minX, int minZ) {
         int height = 5 + random.nextInt(2);
-        long logId = getLogId(mapper, Blocks.OAK_LOG.defaultBlockState(), bId);
-        long leafId = getLeafId(mapper, Blocks.OAK_LEAVES.defaultBlockState(), bId);
 
         for (int i = 0; i < height; i++) setBlockIfInChunk(x, y+i, z, logId, blocks, minX, minZ);
         
@@ -168,20 +140,16 @@ public final class TellusWorldFeatures {
         setBlockIfInChunk(x, tipY, z, logId, blocks, minX, minZ); 
     }
 
-    private static void buildRefinedBirch(int x, int y, int z, Object mapper, Map<BlockPos, Long> blocks, Random random, int bId, int minX, int minZ) {
+    private static void buildRefinedBirch(int x, int y, int z, long logId, long leafId, Long2LongOpenHashMap blocks, Random random, int minX, int minZ) {
         int height = 6 + random.nextInt(4);
-        long logId = getLogId(mapper, Blocks.BIRCH_LOG.defaultBlockState(), bId);
-        long leafId = getLeafId(mapper, Blocks.BIRCH_LEAVES.defaultBlockState(), bId);
 
         for (int i = 0; i < height; i++) setBlockIfInChunk(x, y+i, z, logId, blocks, minX, minZ);
         
         fillEllipsoid(x, y + height - 2, z, 1.8, 3.5, 1.8, leafId, blocks, minX, minZ, random, 0.05);
     }
 
-    private static void buildRefinedSpruce(int x, int y, int z, Object mapper, Map<BlockPos, Long> blocks, Random random, int bId, int minX, int minZ) {
+    private static void buildRefinedSpruce(int x, int y, int z, long logId, long leafId, Long2LongOpenHashMap blocks, Random random, int minX, int minZ) {
         int height = 10 + random.nextInt(6);
-        long logId = getLogId(mapper, Blocks.SPRUCE_LOG.defaultBlockState(), bId);
-        long leafId = getLeafId(mapper, Blocks.SPRUCE_LEAVES.defaultBlockState(), bId);
 
         for (int i = 0; i < height; i++) setBlockIfInChunk(x, y+i, z, logId, blocks, minX, minZ);
         
@@ -205,10 +173,8 @@ public final class TellusWorldFeatures {
         setBlockIfInChunk(x, y + height, z, leafId, blocks, minX, minZ);
     }
 
-    private static void buildRefinedDarkOak(int x, int y, int z, Object mapper, Map<BlockPos, Long> blocks, Random random, int bId, int minX, int minZ) {
+    private static void buildRefinedDarkOak(int x, int y, int z, long logId, long leafId, Long2LongOpenHashMap blocks, Random random, int minX, int minZ) {
         int height = 4 + random.nextInt(2);
-        long logId = getLogId(mapper, Blocks.DARK_OAK_LOG.defaultBlockState(), bId);
-        long leafId = getLeafId(mapper, Blocks.DARK_OAK_LEAVES.defaultBlockState(), bId);
 
         for (int dx = 0; dx <= 1; dx++) {
             for (int dz = 0; dz <= 1; dz++) {
@@ -218,10 +184,8 @@ public final class TellusWorldFeatures {
         fillEllipsoid(x, y + height, z, 4.2, 2.2, 4.2, leafId, blocks, minX, minZ, random, 0.1);
     }
 
-    private static void buildRefinedJungle(int x, int y, int z, Object mapper, Map<BlockPos, Long> blocks, Random random, int bId, int minX, int minZ) {
+    private static void buildRefinedJungle(int x, int y, int z, long logId, long leafId, Long2LongOpenHashMap blocks, Random random, int minX, int minZ) {
         int height = 12 + random.nextInt(15);
-        long logId = getLogId(mapper, Blocks.JUNGLE_LOG.defaultBlockState(), bId);
-        long leafId = getLeafId(mapper, Blocks.JUNGLE_LEAVES.defaultBlockState(), bId);
 
         for (int i = 0; i < height; i++) setBlockIfInChunk(x, y+i, z, logId, blocks, minX, minZ);
         
@@ -234,7 +198,7 @@ public final class TellusWorldFeatures {
         fillEllipsoid(x, y + height, z, 4.5, 3.5, 4.5, leafId, blocks, minX, minZ, random, 0.1);
     }
 
-    private static void fillEllipsoid(int x, int y, int z, double rx, double ry, double rz, long id, Map<BlockPos, Long> blocks, int minX, int minZ, Random random, double noise) {
+    private static void fillEllipsoid(int x, int y, int z, double rx, double ry, double rz, long id, Long2LongOpenHashMap blocks, int minX, int minZ, Random random, double noise) {
         int startX = (int)-Math.ceil(rx);
         int endX = (int)Math.ceil(rx);
         int startY = (int)-Math.ceil(ry);
@@ -257,9 +221,10 @@ public final class TellusWorldFeatures {
         }
     }
 
-    private static void setBlockIfInChunk(int x, int y, int z, long id, Map<BlockPos, Long> blocks, int minX, int minZ) {
+    // keyed by the packed position, so a leaf costs no allocation
+    private static void setBlockIfInChunk(int x, int y, int z, long id, Long2LongOpenHashMap blocks, int minX, int minZ) {
         if (x >= minX && x < minX + 16 && z >= minZ && z < minZ + 16) {
-            blocks.put(new BlockPos(x, y, z), id);
+            blocks.put(BlockPos.asLong(x, y, z), id);
         }
     }
 
@@ -9,97 +9,117 @@ import net.minecraft.world.level.block.state.BlockState;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 
 // reflective access to voxy
 public final class VoxyIngester {
-    private static boolean initialized = false;
-    private static boolean voxyPresent = false;
-
-    // voxy classes
-    private static Class<?> voxyCommonClass;
-    private static Class<?> worldIdentifierClass;
-    private static Class<?> worldEngineClass;
-    private static Class<?> mapperClass;
-    private static Class<?> voxelizedSectionClass;
-    private static Class<?> worldUpdaterClass;
-    private static Class<?> worldConversionFactoryClass;
-
-    // method handles
-    private static MethodHandle getInstanceHandle;
-    private static MethodHandle getOrCreateWorldHandle;
-    private static MethodHandle worldIdOfHandle;
-    private static MethodHandle getMapperHandle;
-    private static MethodHandle getIdForBlockStateHandle;
-    private static MethodHandle createEmptySectionHandle;
-    private static MethodHandle setPositionHandle;
-    private static MethodHandle withLightHandle;
-    private static MethodHandle withBlockBiomeHandle;
-    private static MethodHandle mipSectionHandle;
-    private static MethodHandle insertUpdateHandle;
-    private static MethodHandle getBiomeIdHandle;
-
-    // fields
-    private static java.lang.reflect.Field sectionDataField;
-    private static java.lang.reflect.Field sectionNonAirCountField;
-
     private VoxyIngester() {}
 
-    public static void initialize() {
-        if (initialized) return;
-        initialized = true;
-
-        try {
-            voxyCommonClass = Class.forName("me.cortex.voxy.commonImpl.VoxyCommon");
-            worldIdentifierClass = Class.forName("me.cortex.voxy.commonImpl.WorldIdentifier");
-            worldEngineClass = Class.forName("me.cortex.voxy.common.world.WorldEngine");
-            mapperClass = Class.forName("me.cortex.voxy.common.world.other.Mapper");
-            voxelizedSectionClass = Class.forName("me.cortex.voxy.common.voxelization.VoxelizedSection");
-            worldUpdaterClass = Class.forName("me.cortex.voxy.common.world.WorldUpdater");
-            worldConversionFactoryClass = Class.forName("me.cortex.voxy.common.voxelization.WorldConversionFactory");
-
-            MethodHandles.Lookup lookup = MethodHandles.lookup();
-
-            getInstanceHandle = lookup.unreflect(voxyCommonClass.getMethod("getInstance"));
-            getOrCreateWorldHandle = lookup.unreflect(Class.forName("me.cortex.voxy.commonImpl.VoxyInstance").getMethod("getOrCreate", worldIdentifierClass));
-            worldIdOfHandle = lookup.unreflect(worldIdentifierClass.getMethod("of", net.minecraft.world.level.Level.class));
-            
-            getMapperHandle = lookup.unreflect(worldEngineClass.getMethod("getMapper"));
-            getIdForBlockStateHandle = lookup.unreflect(mapperClass.getMethod("getIdForBlockState", BlockState.class));
-            getBiomeIdHandle = lookup.unreflect(mapperClass.getMethod("getIdForBiome", Holder.class));
-            
-            createEmptySectionHandle = lookup.unreflect(voxelizedSectionClass.getMethod("createEmpty"));
-            setPositionHandle = lookup.unreflect(voxelizedSectionClass.getMethod("setPosition", int.class, int.class, int.class));
-            
-            withLightHandle = lookup.unreflect(mapperClass.getMethod("withLight", long.class, int.class));
-            withBlockBiomeHandle = lookup.unreflect(mapperClass.getMethod("withBlockBiome", long.class, int.class, int.class));
-            
-            mipSectionHandle = lookup.unreflect(worldConversionFactoryClass.getMethod("mipSection", voxelizedSectionClass, mapperClass));
-            insertUpdateHandle = lookup.unreflect(worldUpdaterClass.getMethod("insertUpdate", worldEngineClass, voxelizedSectionClass));
-
-            sectionDataField = voxelizedSectionClass.getDeclaredField("section");
-            sectionDataField.setAccessible(true);
-            sectionNonAirCountField = voxelizedSectionClass.getDeclaredField("lvl0NonAirCount");
-            sectionNonAirCountField.setAccessible(true);
-
-            voxyPresent = true;
-            VoxyWorldGenV2.LOGGER.info("voxy ingester initialized successfully (reflective)");
-        } catch (Exception e) {
-            VoxyWorldGenV2.LOGGER.warn("failed to initialize voxy ingester reflection: {}", e.getMessage());
-            voxyPresent = false;
+    // resolved once on first use, static final so the jit can treat every handle as a constant
+    // all adapted to erased signatures so calls go through invokeExact, null when voxy is missing
+    private static final class Handles {
+        static final boolean PRESENT;
+        static final MethodHandle GET_INSTANCE;
+        static final MethodHandle GET_OR_CREATE_WORLD;
+        static final MethodHandle GET_MAPPER;
+        static final MethodHandle GET_ID_FOR_BLOCK_STATE;
+        static final MethodHandle GET_BIOME_ID;
+        static final MethodHandle CREATE_EMPTY_SECTION;
+        static final MethodHandle SET_POSITION;
+        static final MethodHandle MIP_SECTION;
+        static final MethodHandle INSERT_UPDATE;
+        static final MethodHandle SECTION_DATA_GETTER;
+        static final MethodHandle SECTION_NON_AIR_COUNT_SETTER;
+
+        static {
+            boolean present = false;
+            MethodHandle getInstance = null;
+            MethodHandle getOrCreateWorld = null;
+            MethodHandle getMapper = null;
+            MethodHandle getIdForBlockState = null;
+            MethodHandle getBiomeId = null;
+            MethodHandle createEmptySection = null;
+            MethodHandle setPosition = null;
+            MethodHandle mipSection = null;
+            MethodHandle insertUpdate = null;
+            MethodHandle sectionDataGetter = null;
+            MethodHandle sectionNonAirCountSetter = null;
+            try {
+                Class<?> voxyCommonClass = Class.forName("me.cortex.voxy.commonImpl.VoxyCommon");
+                Class<?> worldIdentifierClass = Class.forName("me.cortex.voxy.commonImpl.WorldIdentifier");
+                Class<?> worldEngineClass = Class.forName("me.cortex.voxy.common.world.WorldEngine");
+                Class<?> mapperClass = Class.forName("me.cortex.voxy.common.world.other.Mapper");
+                Class<?> voxelizedSectionClass = Class.forName("me.cortex.voxy.common.voxelization.VoxelizedSection");
+                Class<?> worldUpdaterClass = Class.forName("me.cortex.voxy.common.world.WorldUpdater");
+                Class<?> worldConversionFactoryClass = Class.forName("me.cortex.voxy.common.voxelization.WorldConversionFactory");
+
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+                getInstance = lookup.unreflect(voxyCommonClass.getMethod("getInstance"))
+                    .asType(MethodType.methodType(Object.class));
+                getOrCreateWorld = lookup.unreflect(Class.forName("me.cortex.voxy.commonImpl.VoxyInstance").getMethod("getOrCreate", worldIdentifierClass))
+                    .asType(MethodType.methodType(Object.class, Object.class, Object.class));
+
+                getMapper = lookup.unreflect(worldEngineClass.getMethod("getMapper"))
+                    .asType(MethodType.methodType(Object.class, Object.class));
+                getIdForBlockState = lookup.unreflect(mapperClass.getMethod("getIdForBlockState", BlockState.class))
+                    .asType(MethodType.methodType(int.class, Object.class, BlockState.class));
+                getBiomeId = lookup.unreflect(mapperClass.getMethod("getIdForBiome", Holder.class))
+                    .asType(MethodType.methodType(int.class, Object.class, Holder.class));
+
+                createEmptySection = lookup.unreflect(voxelizedSectionClass.getMethod("createEmpty"))
+                    .asType(MethodType.methodType(Object.class));
+                setPosition = lookup.unreflect(voxelizedSectionClass.getMethod("setPosition", int.class, int.class, int.class))
+                    .asType(MethodType.methodType(Object.class, Object.class, int.class, int.class, int.class));
+
+                mipSection = lookup.unreflect(worldConversionFactoryClass.getMethod("mipSection", voxelizedSectionClass, mapperClass))
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+                insertUpdate = lookup.unreflect(worldUpdaterClass.getMethod("insertUpdate", worldEngineClass, voxelizedSectionClass))
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+
+                Field sectionDataField = voxelizedSectionClass.getDeclaredField("section");
+                sectionDataField.setAccessible(true);
+                sectionDataGetter = lookup.unreflectGetter(sectionDataField)
+                    .asType(MethodType.methodType(long[].class, Object.class));
+                Field sectionNonAirCountField = voxelizedSectionClass.getDeclaredField("lvl0NonAirCount");
+                sectionNonAirCountField.setAccessible(true);
+                sectionNonAirCountSetter = lookup.unreflectSetter(sectionNonAirCountField)
+                    .asType(MethodType.methodType(void.class, Object.class, int.class));
+
+                present = true;
+                VoxyWorldGenV2.LOGGER.info("voxy ingester initialized successfully (reflective)");
+            } catch (Exception e) {
+                VoxyWorldGenV2.LOGGER.warn("failed to initialize voxy ingester reflection: {}", e.getMessage());
+            }
+            PRESENT = present;
+            GET_INSTANCE = getInstance;
+            GET_OR_CREATE_WORLD = getOrCreateWorld;
+            GET_MAPPER = getMapper;
+            GET_ID_FOR_BLOCK_STATE = getIdForBlockState;
+            GET_BIOME_ID = getBiomeId;
+            CREATE_EMPTY_SECTION = createEmptySection;
+            SET_POSITION = setPosition;
+            MIP_SECTION = mipSection;
+            INSERT_UPDATE = insertUpdate;
+            SECTION_DATA_GETTER = sectionDataGetter;
+            SECTION_NON_AIR_COUNT_SETTER = sectionNonAirCountSetter;
         }
     }
 
+    // resolves the handles now instead of on the first ingest
+    public static void initialize() {
+        isAvailable();
+    }
+
     public static boolean isAvailable() {
-        if (!initialized) initialize();
-        return voxyPresent;
+        return Handles.PRESENT;
     }
 
     public static Object getVoxyInstance() {
         if (!isAvailable()) return null;
         try {
-            return getInstanceHandle.invoke();
+            return (Object) Handles.GET_INSTANCE.invokeExact();
         } catch (Throwable e) {
             return null;
         }
@@ -107,8 +127,9 @@ public final class VoxyIngester {
 
     public static Object getWorldEngine(Object voxyInstance, ServerLevel level) {
         try {
-            Object worldId = worldIdOfHandle.invoke(level);
-            return getOrCreateWorldHandle.invoke(voxyInstance, worldId);
+            Object worldId = com.ethan.voxyworldgenv2.integration.VoxyWorldIds.of(level);
+            if (worldId == null) return null;
+            return (Object) Handles.GET_OR_CREATE_WORLD.invokeExact(voxyInstance, worldId);
         } catch (Throwable e) {
             return null;
         }
@@ -116,7 +137,7 @@ public final class VoxyIngester {
 
     public static Object getMapper(Object worldEngine) {
         try {
-            return getMapperHandle.invoke(worldEngine);
+            return (Object) Handles.GET_MAPPER.invokeExact(worldEngine);
         } catch (Throwable e) {
             return null;
         }
@@ -124,7 +145,7 @@ public final class VoxyIngester {
 
     public static int getBlockId(Object mapper, BlockState state) {
         try {
-            return (int) getIdForBlockStateHandle.invoke(mapper, state);
+            return (int) Handles.GET_ID_FOR_BLOCK_STATE.invokeExact(mapper, state);
         } catch (Throwable e) {
             return 0;
         }
@@ -136,7 +157,7 @@ public final class VoxyIngester {
 
     public static int getBiomeId(Object mapper, Holder<Biome> biome) {
         try {
-            return (int) getBiomeIdHandle.invoke(mapper, biome);
+            return (int) Handles.GET_BIOME_ID.invokeExact(mapper, biome);
         } catch (Throwable e) {
             return 0;
         }
@@ -152,10 +173,16 @@ public final class VoxyIngester {
                (((long) (blockId & 0xFFFFF)) << 27);
     }
 
+    // sets the biome of an id composed with biome 0, air carries no biome and comes back as it was
+    public static long withBiome(long base, int biomeId) {
+        if ((base & (0xFFFFFL << 27)) == 0) return base;
+        return base | (((long) (biomeId & 0x1FF)) << 47);
+    }
+
     public static Object createSection(int cx, int cy, int cz) {
         try {
-            Object vs = createEmptySectionHandle.invoke();
-            return setPositionHandle.invoke(vs, cx, cy, cz);
+            Object vs = (Object) Handles.CREATE_EMPTY_SECTION.invokeExact();
+            return (Object) Handles.SET_POSITION.invokeExact(vs, cx, cy, cz);
         } catch (Throwable e) {
             return null;
         }
@@ -163,22 +190,22 @@ public final class VoxyIngester {
 
     public static long[] getSectionData(Object section) {
         try {
-            return (long[]) sectionDataField.get(section);
-        } catch (IllegalAccessException e) {
+            return (long[]) Handles.SECTION_DATA_GETTER.invokeExact(section);
+        } catch (Throwable e) {
             return null;
         }
     }
 
     public static void setNonAirCount(Object section, int count) {
         try {
-            sectionNonAirCountField.set(section, count);
-        } catch (IllegalAccessException ignored) {}
+            Handles.SECTION_NON_AIR_COUNT_SETTER.invokeExact(section, count);
+        } catch (Throwable ignored) {}
     }
 
     public static void mipAndInsert(Object engine, Object mapper, Object section) {
         try {
-            mipSectionHandle.invoke(section, mapper);
-            insertUpdateHandle.invoke(engine, section);
+            Handles.MIP_SECTION.invokeExact(section, mapper);
+            Handles.INSERT_UPDATE.invokeExact(engine, section);
         } catch (Throwable e) {
             VoxyWorldGenV2.LOGGER.error("failed to mip/insert voxy section", e);
         }
@@ -4,7 +4,6 @@ import com.ethan.voxyworldgenv2.core.ChunkUpdateTracker;
 import net.minecraft.core.BlockPos;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.chunk.LevelChunk;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
@@ -13,13 +12,9 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 @Mixin(ServerLevel.class)
 public abstract class BlockUpdateMixin {
     
+    // only ever called for loaded chunks, so the position alone is enough to mark it
     @Inject(method = "sendBlockUpdated", at = @At("TAIL"))
     private void onBlockUpdated(BlockPos pos, BlockState oldState, BlockState newState, int flags, CallbackInfo ci) {
-        ServerLevel self = (ServerLevel) (Object) this;
-        
-        LevelChunk chunk = self.getChunkAt(pos);
-        if (chunk != null) {
-            ChunkUpdateTracker.getInstance().markDirty(chunk);
-        }
+        ChunkUpdateTracker.getInstance().markDirty((ServerLevel) (Object) this, pos);
     }
 }
@@ -0,0 +1,130 @@
+package com.ethan.voxyworldgenv2.network;
+
+import com.ethan.voxyworldgenv2.VoxyWorldGenV2;
+import com.ethan.voxyworldgenv2.core.ChunkPersistence;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMaps;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// client-side record of the lod hashes ingested into voxy, one file per server and dimension
+public class LODClientIndex {
+    private static final LODClientIndex INSTANCE = new LODClientIndex();
+    private static final Path INDEX_DIR = FabricLoader.getInstance().getGameDir().resolve("voxyworldgenv2").resolve("lod_index");
+
+    private final Long2LongOpenHashMap hashes = new Long2LongOpenHashMap();
+    private ResourceKey<Level> dimension;
+    private Path file;
+    private boolean dirty = false;
+
+    private LODClientIndex() {}
+
+    public static LODClientIndex getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized void open(String serverKey, ResourceKey<Level> dim) {
+        save();
+        hashes.clear();
+        dimension = dim;
+        file = INDEX_DIR.resolve(sanitize(serverKey) + "_" + ChunkPersistence.getDimensionId(dim) + ".bin");
+
+        try {
+            if (Files.exists(file)) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        hashes.put(in.readLong(), in.readLong());
+                    }
+                }
+                VoxyWorldGenV2.LOGGER.info("loaded {} lod hashes for {}", hashes.size(), dim);
+            }
+        } catch (Exception e) {
+            // a partial index only costs a resend, start over
+            hashes.clear();
+            VoxyWorldGenV2.LOGGER.error("failed to load lod index", e);
+        }
+    }
+
+    public synchronized void close() {
+        save();
+        hashes.clear();
+        dimension = null;
+        file = null;
+    }
+
+    public synchronized ResourceKey<Level> getDimension() {
+        return dimension;
+    }
+
+    public synchronized void record(ResourceKey<Level> dim, long pos, long hash) {
+        if (!dim.equals(dimension)) return;
+        if (hashes.put(pos, hash) != hash) dirty = true;
+    }
+
+    public synchronized void forget(ResourceKey<Level> dim, long pos) {
+        if (!dim.equals(dimension)) return;
+        if (hashes.remove(pos) != 0) dirty = true;
+    }
+
+    // region digests nearest to the player first, so the server can release the closest sync work soonest
+    public synchronized List<NetworkHandler.LODSummaryPayload.RegionSummary> summarize(ChunkPos center) {
+        Long2LongOpenHashMap digests = new Long2LongOpenHashMap();
+        Long2IntOpenHashMap counts = new Long2IntOpenHashMap();
+        for (Long2LongMap.Entry entry : Long2LongMaps.fastIterable(hashes)) {
+            long region = LODHashes.regionKey(entry.getLongKey());
+            digests.addTo(region, LODHashes.chunkDigest(entry.getLongKey(), entry.getLongValue()));
+            counts.addTo(region, 1);
+        }
+
+        int cx = center.x >> LODHashes.REGION_SHIFT;
+        int cz = center.z >> LODHashes.REGION_SHIFT;
+        LongArrayList regions = new LongArrayList(digests.keySet());
+        regions.sort((a, b) -> Long.compare(regionDistSq(a, cx, cz), regionDistSq(b, cx, cz)));
+
+        List<NetworkHandler.LODSummaryPayload.RegionSummary> out = new ArrayList<>(regions.size());
+        for (int i = 0; i < regions.size(); i++) {
+            long region = regions.getLong(i);
+            out.add(new NetworkHandler.LODSummaryPayload.RegionSummary(region, digests.get(region), counts.get(region)));
+        }
+        return out;
+    }
+
+    public synchronized void save() {
+        if (!dirty || file == null) return;
+        try {
+            Files.createDirectories(file.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                out.writeInt(hashes.size());
+                for (Long2LongMap.Entry entry : Long2LongMaps.fastIterable(hashes)) {
+                    out.writeLong(entry.getLongKey());
+                    out.writeLong(entry.getLongValue());
+                }
+            }
+            dirty = false;
+        } catch (Exception e) {
+            VoxyWorldGenV2.LOGGER.error("failed to save lod index", e);
+        }
+    }
+
+    private static long regionDistSq(long region, int cx, int cz) {
+        long dx = ChunkPos.getX(region) - cx;
+        long dz = ChunkPos.getZ(region) - cz;
+        return dx * dx + dz * dz;
+    }
+
+    private static String sanitize(String key) {
+        return key.replaceAll("[^a-zA-Z0-9._-]", "_");
+    }
+}
@@ -0,0 +1,141 @@
+package com.ethan.voxyworldgenv2.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// deflate codec for lod payload bodies, primed with a per-dimension preset dictionary
+public final class LODCompression {
+    public static final byte CODEC_RAW = 0;
+    public static final byte CODEC_DEFLATE = 1;
+    public static final byte CODEC_DEFLATE_OVERWORLD = 2;
+    public static final byte CODEC_DEFLATE_NETHER = 3;
+    public static final byte CODEC_DEFLATE_END = 4;
+    private static final int CODEC_COUNT = 5;
+
+    // guards against absurd allocations from a malformed rawLength
+    public static final int MAX_RAW_LENGTH = 16 * 1024 * 1024;
+
+    private static final byte[][] DICTIONARIES = new byte[CODEC_COUNT][];
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private LODCompression() {}
+
+    public static byte codecFor(ResourceKey<Level> dimension) {
+        if (Level.OVERWORLD.equals(dimension)) return CODEC_DEFLATE_OVERWORLD;
+        if (Level.NETHER.equals(dimension)) return CODEC_DEFLATE_NETHER;
+        if (Level.END.equals(dimension)) return CODEC_DEFLATE_END;
+        return CODEC_DEFLATE;
+    }
+
+    public static byte[] compress(byte[] raw, byte codec, int level) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setLevel(Math.max(Deflater.BEST_SPEED, Math.min(Deflater.BEST_COMPRESSION, level)));
+        deflater.setDictionary(dictionary(codec));
+        deflater.setInput(raw);
+        deflater.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(chunk);
+            out.write(chunk, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] decompress(byte[] body, byte codec, int rawLength) throws IOException {
+        if (rawLength < 0 || rawLength > MAX_RAW_LENGTH) {
+            throw new IOException("invalid lod payload length " + rawLength);
+        }
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(body);
+
+        byte[] out = new byte[rawLength];
+        int written = 0;
+        try {
+            while (written < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(out, written, rawLength - written);
+                if (n == 0) {
+                    if (!inflater.needsDictionary()) break;
+                    inflater.setDictionary(dictionary(codec));
+                    continue;
+                }
+                written += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt lod payload", e);
+        }
+        if (written != rawLength) {
+            throw new IOException("truncated lod payload (" + written + "/" + rawLength + ")");
+        }
+        return out;
+    }
+
+    private static byte[] dictionary(byte codec) {
+        int index = codec >= 0 && codec < CODEC_COUNT ? codec : CODEC_DEFLATE;
+        byte[] dict = DICTIONARIES[index];
+        if (dict == null) {
+            dict = buildDictionary(index);
+            DICTIONARIES[index] = dict;
+        }
+        return dict;
+    }
+
+    // palette ids and light runs that show up in almost every section; most common content goes last
+    // so the shortest back-references hit it. both sides build this from the same registries.
+    private static byte[] buildDictionary(int codec) {
+        ByteBuf raw = Unpooled.buffer(1024);
+        try {
+            FriendlyByteBuf buf = new FriendlyByteBuf(raw);
+
+            byte[] dark = new byte[258];
+            byte[] bright = new byte[258];
+            Arrays.fill(bright, (byte) 0xFF);
+            buf.writeBytes(dark);
+            buf.writeBytes(bright);
+
+            Block[] common = switch (codec) {
+                case CODEC_DEFLATE_NETHER -> new Block[] {
+                    Blocks.LAVA, Blocks.MAGMA_BLOCK, Blocks.GLOWSTONE, Blocks.NETHER_QUARTZ_ORE, Blocks.NETHER_GOLD_ORE,
+                    Blocks.BASALT, Blocks.BLACKSTONE, Blocks.SOUL_SOIL, Blocks.SOUL_SAND, Blocks.GRAVEL,
+                    Blocks.CRIMSON_NYLIUM, Blocks.WARPED_NYLIUM, Blocks.BEDROCK, Blocks.NETHERRACK, Blocks.AIR
+                };
+                case CODEC_DEFLATE_END -> new Block[] {
+                    Blocks.OBSIDIAN, Blocks.CHORUS_PLANT, Blocks.CHORUS_FLOWER, Blocks.PURPUR_BLOCK,
+                    Blocks.END_STONE_BRICKS, Blocks.END_STONE, Blocks.AIR
+                };
+                default -> new Block[] {
+                    Blocks.COAL_ORE, Blocks.IRON_ORE, Blocks.COPPER_ORE, Blocks.DEEPSLATE_IRON_ORE, Blocks.LAVA,
+                    Blocks.TUFF, Blocks.DIORITE, Blocks.ANDESITE, Blocks.GRANITE, Blocks.GRAVEL, Blocks.CLAY,
+                    Blocks.SANDSTONE, Blocks.SAND, Blocks.SNOW, Blocks.SHORT_GRASS, Blocks.OAK_LEAVES,
+                    Blocks.SPRUCE_LEAVES, Blocks.OAK_LOG, Blocks.BEDROCK, Blocks.DEEPSLATE, Blocks.WATER,
+                    Blocks.GRASS_BLOCK, Blocks.DIRT, Blocks.STONE, Blocks.AIR
+                };
+            };
+            for (Block block : common) {
+                buf.writeVarInt(Block.getId(block.defaultBlockState()));
+            }
+
+            byte[] out = new byte[buf.readableBytes()];
+            buf.readBytes(out);
+            return out;
+        } finally {
+            raw.release();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.ethan.voxyworldgenv2.network;
+
+import net.minecraft.core.Holder;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.DataLayer;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.level.chunk.PalettedContainerFactory;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * coarse section format for far lods: one block per (2^scale)^3 cell, picked like a voxy mip
+ * section: y, palette of global block state ids, one palette index per cell, biomes, light
+ */
+public final class LODDownsampler {
+    private record Coarse(int y, LevelChunkSection section, DataLayer blockLight, DataLayer skyLight) {}
+
+    private LODDownsampler() {}
+
+    // builds the coarse body from a full-resolution payload, so unloaded chunks can be downsampled from the store
+    public static NetworkHandler.LODDataPayload downsample(NetworkHandler.LODDataPayload full, int scale, RegistryAccess registryAccess) throws java.io.IOException {
+        List<Coarse> sections = new ArrayList<>();
+        NetworkHandler.LODDataPayload.readSections(full.rawBody(), 0, registryAccess, NetworkHandler.factoryFor(registryAccess),
+            (y, section, blockLight, skyLight) -> sections.add(new Coarse(y, section, blockLight, skyLight)));
+
+        io.netty.buffer.ByteBuf raw = io.netty.buffer.PooledByteBufAllocator.DEFAULT.buffer(sections.size() * 256 + 8);
+        try {
+            RegistryFriendlyByteBuf buf = new RegistryFriendlyByteBuf(raw, registryAccess);
+            buf.writeVarInt(sections.size());
+            for (Coarse coarse : sections) {
+                buf.writeInt(coarse.y());
+                writeCells(buf, coarse.section(), scale);
+                coarse.section().getBiomes().write(buf);
+                LODLightCodec.write(buf, downsampleLight(coarse.blockLight(), scale));
+                LODLightCodec.write(buf, downsampleLight(coarse.skyLight(), scale));
+            }
+            byte[] body = new byte[buf.readableBytes()];
+            buf.readBytes(body);
+            return new NetworkHandler.LODDataPayload(full.pos(), full.minY(), (byte) scale, LODCompression.CODEC_RAW, body.length, body);
+        } finally {
+            raw.release();
+        }
+    }
+
+    private static void writeCells(RegistryFriendlyByteBuf buf, LevelChunkSection section, int scale) {
+        int cell = 1 << scale;
+        int n = 16 >> scale;
+
+        // local palette over the section first, then a per-cell vote using plain counters
+        Map<BlockState, Integer> lookup = new IdentityHashMap<>();
+        List<BlockState> palette = new ArrayList<>();
+        int[] local = new int[4096];
+        for (int i = 0; i < 4096; i++) {
+            BlockState state = section.getBlockState(i & 15, i >> 8, (i >> 4) & 15);
+            Integer index = lookup.get(state);
+            if (index == null) {
+                index = palette.size();
+                lookup.put(state, index);
+                palette.add(state);
+            }
+            local[i] = index;
+        }
+
+        buf.writeVarInt(palette.size());
+        for (BlockState state : palette) {
+            buf.writeVarInt(Block.getId(state));
+        }
+
+        int[] counts = new int[palette.size()];
+        for (int cy = 0; cy < n; cy++) {
+            for (int cz = 0; cz < n; cz++) {
+                for (int cx = 0; cx < n; cx++) {
+                    java.util.Arrays.fill(counts, 0);
+                    for (int dy = 0; dy < cell; dy++) {
+                        for (int dz = 0; dz < cell; dz++) {
+                            for (int dx = 0; dx < cell; dx++) {
+                                int x = (cx << scale) + dx;
+                                int y = (cy << scale) + dy;
+                                int z = (cz << scale) + dz;
+                                counts[local[(y << 8) | (z << 4) | x]]++;
+                            }
+                        }
+                    }
+                    // any solid content wins over air so thin surfaces survive, like voxy's own mips
+                    int best = -1;
+                    int air = -1;
+                    for (int p = 0; p < counts.length; p++) {
+                        if (counts[p] == 0) continue;
+                        if (palette.get(p).isAir()) {
+                            if (air < 0 || counts[p] > counts[air]) air = p;
+                        } else if (best < 0 || counts[p] > counts[best]) {
+                            best = p;
+                        }
+                    }
+                    buf.writeVarInt(best >= 0 ? best : air);
+                }
+            }
+        }
+    }
+
+    // brightest value per cell, so lit surfaces do not go dark at distance
+    private static DataLayer downsampleLight(DataLayer layer, int scale) {
+        if (layer == null || layer.isDefinitelyHomogenous()) return layer;
+        int cell = 1 << scale;
+        DataLayer out = new DataLayer();
+        for (int cy = 0; cy < 16; cy += cell) {
+            for (int cz = 0; cz < 16; cz += cell) {
+                for (int cx = 0; cx < 16; cx += cell) {
+                    int max = 0;
+                    for (int dy = 0; dy < cell; dy++) {
+                        for (int dz = 0; dz < cell; dz++) {
+                            for (int dx = 0; dx < cell; dx++) {
+                                max = Math.max(max, layer.get(cx + dx, cy + dy, cz + dz));
+                            }
+                        }
+                    }
+                    if (max == 0) continue;
+                    for (int dy = 0; dy < cell; dy++) {
+                        for (int dz = 0; dz < cell; dz++) {
+                            for (int dx = 0; dx < cell; dx++) {
+                                out.set(cx + dx, cy + dy, cz + dz, max);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    // expands one coarse section back to full size, each cell filling its whole block range
+    @SuppressWarnings("unchecked")
+    static LevelChunkSection readCells(RegistryFriendlyByteBuf buf, int scale, PalettedContainerFactory factory) {
+        int cell = 1 << scale;
+        int n = 16 >> scale;
+
+        int paletteSize = buf.readVarInt();
+        if (paletteSize <= 0 || paletteSize > 4096) throw new IllegalStateException("invalid lod palette size " + paletteSize);
+        BlockState[] palette = new BlockState[paletteSize];
+        for (int i = 0; i < paletteSize; i++) {
+            palette[i] = Block.stateById(buf.readVarInt());
+        }
+
+        LevelChunkSection section = new LevelChunkSection(factory);
+        for (int cy = 0; cy < n; cy++) {
+            for (int cz = 0; cz < n; cz++) {
+                for (int cx = 0; cx < n; cx++) {
+                    int index = buf.readVarInt();
+                    if (index < 0 || index >= paletteSize) throw new IllegalStateException("lod palette index out of range");
+                    BlockState state = palette[index];
+                    if (state.isAir()) continue;
+                    for (int dy = 0; dy < cell; dy++) {
+                        for (int dz = 0; dz < cell; dz++) {
+                            for (int dx = 0; dx < cell; dx++) {
+                                section.setBlockState((cx << scale) + dx, (cy << scale) + dy, (cz << scale) + dz, state, false);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        ((PalettedContainer<Holder<Biome>>) section.getBiomes()).read(buf);
+        return section;
+    }
+}
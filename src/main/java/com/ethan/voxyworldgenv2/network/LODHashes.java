@@ -0,0 +1,50 @@
+package com.ethan.voxyworldgenv2.network;
+
+import net.minecraft.world.level.ChunkPos;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+// content hashes for lod bodies and the per-region digests both sides compare on resync
+public final class LODHashes {
+    // 8x8 chunks per region, small enough that one edited chunk does not resend much
+    public static final int REGION_SHIFT = 3;
+    public static final int REGION_SIZE = 1 << REGION_SHIFT;
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long PRIME = 0x9E3779B97F4A7C15L;
+
+    private LODHashes() {}
+
+    // 64-bit hash of an uncompressed body, never 0 so 0 can mean unknown
+    public static long hash(byte[] data) {
+        long h = data.length * PRIME;
+        int i = 0;
+        for (; i + 8 <= data.length; i += 8) {
+            h = mix(h ^ (long) LONGS.get(data, i));
+        }
+        long tail = 0;
+        for (int shift = 0; i < data.length; i++, shift += 8) {
+            tail |= (data[i] & 0xFFL) << shift;
+        }
+        h = mix(h ^ tail);
+        return h == 0 ? 1 : h;
+    }
+
+    public static long regionKey(long chunkPos) {
+        return ChunkPos.asLong(ChunkPos.getX(chunkPos) >> REGION_SHIFT, ChunkPos.getZ(chunkPos) >> REGION_SHIFT);
+    }
+
+    // order independent, so both sides can sum in whatever order their maps iterate
+    public static long chunkDigest(long chunkPos, long hash) {
+        return mix(chunkPos * PRIME + hash);
+    }
+
+    private static long mix(long h) {
+        h *= PRIME;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 32);
+    }
+}
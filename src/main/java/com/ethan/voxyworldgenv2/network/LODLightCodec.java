@@ -0,0 +1,109 @@
+package com.ethan.voxyworldgenv2.network;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.level.chunk.DataLayer;
+
+// compact encoding for section light layers, most of which are empty or uniformly lit
+public final class LODLightCodec {
+    private static final byte TAG_ABSENT = 0;
+    private static final byte TAG_UNIFORM = 1;
+    private static final byte TAG_RLE = 2;
+    private static final byte TAG_RAW = 3;
+
+    private static final int NIBBLES = 4096;
+
+    private LODLightCodec() {}
+
+    public static void write(FriendlyByteBuf buf, DataLayer layer) {
+        if (layer == null) {
+            buf.writeByte(TAG_ABSENT);
+            return;
+        }
+        if (layer.isDefinitelyHomogenous()) {
+            buf.writeByte(TAG_UNIFORM);
+            buf.writeByte(layer.get(0, 0, 0));
+            return;
+        }
+
+        byte[] data = layer.getData();
+        int runs = countRuns(data);
+        if (runs == 1) {
+            buf.writeByte(TAG_UNIFORM);
+            buf.writeByte(data[0] & 0xF);
+        } else if (runs * 3 < data.length) {
+            // each run costs a value byte plus a 1-2 byte varint length
+            buf.writeByte(TAG_RLE);
+            buf.writeVarInt(runs);
+            int current = data[0] & 0xF;
+            int length = 0;
+            for (int i = 0; i < NIBBLES; i++) {
+                int value = nibble(data, i);
+                if (value != current) {
+                    buf.writeByte(current);
+                    buf.writeVarInt(length);
+                    current = value;
+                    length = 0;
+                }
+                length++;
+            }
+            buf.writeByte(current);
+            buf.writeVarInt(length);
+        } else {
+            buf.writeByte(TAG_RAW);
+            buf.writeBytes(data);
+        }
+    }
+
+    public static DataLayer read(FriendlyByteBuf buf) {
+        byte tag = buf.readByte();
+        switch (tag) {
+            case TAG_ABSENT:
+                return null;
+            case TAG_UNIFORM:
+                return new DataLayer(buf.readByte() & 0xF);
+            case TAG_RLE: {
+                byte[] data = new byte[DataLayer.SIZE];
+                int runs = buf.readVarInt();
+                int index = 0;
+                for (int r = 0; r < runs; r++) {
+                    int value = buf.readByte() & 0xF;
+                    int length = buf.readVarInt();
+                    if (length < 0 || index + length > NIBBLES) {
+                        throw new IllegalStateException("light run overflows section");
+                    }
+                    if (value != 0) {
+                        for (int i = index; i < index + length; i++) {
+                            data[i >> 1] |= (byte) (value << ((i & 1) << 2));
+                        }
+                    }
+                    index += length;
+                }
+                return new DataLayer(data);
+            }
+            case TAG_RAW: {
+                byte[] data = new byte[DataLayer.SIZE];
+                buf.readBytes(data);
+                return new DataLayer(data);
+            }
+            default:
+                throw new IllegalStateException("unknown light tag " + tag);
+        }
+    }
+
+    private static int countRuns(byte[] data) {
+        int runs = 1;
+        int current = data[0] & 0xF;
+        for (int i = 1; i < NIBBLES; i++) {
+            int value = nibble(data, i);
+            if (value != current) {
+                runs++;
+                current = value;
+            }
+        }
+        return runs;
+    }
+
+    private static int nibble(byte[] data, int index) {
+        return (data[index >> 1] >> ((index & 1) << 2)) & 0xF;
+    }
+}
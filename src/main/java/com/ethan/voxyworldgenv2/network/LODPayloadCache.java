@@ -0,0 +1,88 @@
+package com.ethan.voxyworldgenv2.network;
+
+import com.ethan.voxyworldgenv2.core.Config;
+import com.ethan.voxyworldgenv2.core.LODBands;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// bounded lru of encoded lod payloads, so a chunk is serialized once and fanned out to every player
+public final class LODPayloadCache {
+    private static final LODPayloadCache INSTANCE = new LODPayloadCache();
+
+    // scale 0 is the full-resolution payload, higher scales are the downsampled copies
+    private record Key(ResourceKey<Level> dimension, long pos, int scale) {}
+
+    private record Entry(long version, NetworkHandler.LODDataPayload payload, long bytes) {}
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    private LODPayloadCache() {}
+
+    public static LODPayloadCache getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized NetworkHandler.LODDataPayload get(ResourceKey<Level> dimension, long pos, int scale, long version) {
+        Entry entry = entries.get(new Key(dimension, pos, scale));
+        if (entry == null || entry.version() != version) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.payload();
+    }
+
+    public synchronized void put(ResourceKey<Level> dimension, long pos, int scale, long version, NetworkHandler.LODDataPayload payload) {
+        long bytes = payload.estimatedSize();
+        Entry previous = entries.put(new Key(dimension, pos, scale), new Entry(version, payload, bytes));
+        if (previous != null) totalBytes -= previous.bytes();
+        totalBytes += bytes;
+
+        // evict least recently used entries until we are back under the memory cap
+        long maxBytes = Math.max(1, Config.DATA.lodCacheMaxMb) * 1024L * 1024L;
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            totalBytes -= it.next().getValue().bytes();
+            it.remove();
+        }
+    }
+
+    public synchronized void invalidate(ResourceKey<Level> dimension, long pos) {
+        for (int scale = 0; scale <= LODBands.MAX_SCALE; scale++) {
+            Entry removed = entries.remove(new Key(dimension, pos, scale));
+            if (removed != null) totalBytes -= removed.bytes();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+        hits.set(0);
+        misses.set(0);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
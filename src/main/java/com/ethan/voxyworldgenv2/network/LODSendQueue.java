@@ -0,0 +1,262 @@
+package com.ethan.voxyworldgenv2.network;
+
+import com.ethan.voxyworldgenv2.core.Config;
+import com.ethan.voxyworldgenv2.core.SyncedChunkMap;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+// per-player outbound lod queue, paced by a token bucket and client credits, drained nearest-first
+public class LODSendQueue {
+    private record Entry(CustomPacketPayload packet, long pos, ResourceKey<Level> dimension, int bytes, boolean full) {}
+
+    private final List<Entry> pending = new ArrayList<>();
+    // the first sortedCount entries are filtered and in send order for this view, the rest arrived since
+    private int sortedCount = 0;
+    private ResourceKey<Level> sortedDimension;
+    private ChunkPos sortedCenter;
+    private int sortedRadius;
+    private LongPredicate sortedRequested;
+    private double tokens = 0;
+    private long lastRefillNanos = 0;
+
+    private long bytesSent = 0;
+    private long payloadsSent = 0;
+    private long dropped = 0;
+
+    private double byteRate = 0; // bytes/s
+    private long lastRateTime = 0;
+    private long lastRateBytes = 0;
+
+    // credit flow control: the client reports how many chunks it finished and how many more it will take
+    private long chunksSent = 0;
+    private long chunksAcked = 0;
+    private int creditWindow = 0;
+    // (chunksSent after a drain, time of that drain), popped as acks cover them to measure round trips
+    private final ArrayDeque<long[]> inFlight = new ArrayDeque<>();
+    private double rttMs = 0;
+    private long starvedSince = 0;
+    private long starvedNanos = 0;
+    private long starvedDrains = 0;
+
+    // requested may be null, otherwise entries it matches are the last to go on overflow
+    public synchronized void enqueue(ServerPlayer player, CustomPacketPayload packet, ChunkPos pos, int bytes, boolean full, SyncedChunkMap synced, LongPredicate requested) {
+        long key = pos.toLong();
+        ResourceKey<Level> dimension = player.level().dimension();
+
+        if (!full) {
+            // a delta cannot be applied before the full chunk it patches, so drop both and let sync resend a fresh copy
+            for (int i = 0; i < pending.size(); i++) {
+                Entry e = pending.get(i);
+                if (e.full() && e.pos() == key && e.dimension().equals(dimension)) {
+                    removeAt(i);
+                    dropped += 2;
+                    if (synced != null) synced.remove(dimension, key);
+                    return;
+                }
+            }
+        }
+
+        pending.add(new Entry(packet, key, dimension, bytes, full));
+
+        int limit = Math.max(16, Config.DATA.maxQueuedPayloadsPerPlayer);
+        if (pending.size() > limit) {
+            dropFarthest(player, synced, requested);
+        }
+    }
+
+    public synchronized void onCredit(long ingested, int window) {
+        long now = System.nanoTime();
+        chunksAcked = Math.max(chunksAcked, Math.min(ingested, chunksSent));
+        creditWindow = Math.max(0, window);
+
+        long[] covered = null;
+        while (!inFlight.isEmpty() && inFlight.peekFirst()[0] <= chunksAcked) {
+            covered = inFlight.pollFirst();
+        }
+        if (covered != null) {
+            double ms = (now - covered[1]) / 1_000_000.0;
+            rttMs = rttMs == 0 ? ms : rttMs * 0.9 + ms * 0.1;
+        }
+        if (starvedSince != 0 && credits() > 0) {
+            starvedNanos += now - starvedSince;
+            starvedSince = 0;
+        }
+    }
+
+    private long credits() {
+        return chunksAcked + creditWindow - chunksSent;
+    }
+
+    // requested may be null, otherwise entries it matches survive the range check and go first
+    public synchronized void drain(ServerPlayer player, int radiusChunks, SyncedChunkMap synced, boolean batching, boolean credited, LongPredicate requested) {
+        long now = System.nanoTime();
+        updateRate(now);
+
+        if (pending.isEmpty()) {
+            lastRefillNanos = now;
+            return;
+        }
+        if (credited && credits() <= 0) {
+            // the client is still busy with what it has, keep everything queued until it grants more
+            starvedDrains++;
+            if (starvedSince == 0) starvedSince = now;
+            return;
+        }
+
+        long rate = Config.DATA.maxBytesPerSecondPerPlayer;
+        if (rate > 0) {
+            if (lastRefillNanos == 0) lastRefillNanos = now;
+            tokens = Math.min(rate, tokens + rate * ((now - lastRefillNanos) / 1_000_000_000.0));
+            lastRefillNanos = now;
+            if (tokens <= 0) return;
+        }
+
+        ResourceKey<Level> dimension = player.level().dimension();
+        ChunkPos center = player.chunkPosition();
+        long radiusSq = (long) radiusChunks * radiusChunks;
+
+        // requested entries first, then nearest first
+        Comparator<Entry> order = Comparator.comparingInt((Entry e) -> requested != null && requested.test(e.pos()) ? 0 : 1)
+                .thenComparingLong(e -> distSq(center, e.pos()));
+        // the order only moves with the player's chunk, the range or the request set, otherwise just the new arrivals are placed
+        if (!dimension.equals(sortedDimension) || !center.equals(sortedCenter) || radiusChunks != sortedRadius || !java.util.Objects.equals(requested, sortedRequested)) {
+            sortedCount = 0;
+            sortedDimension = dimension;
+            sortedCenter = center;
+            sortedRadius = radiusChunks;
+            sortedRequested = requested;
+        }
+        if (sortedCount < pending.size()) {
+            List<Entry> fresh = new ArrayList<>(pending.subList(sortedCount, pending.size()));
+            pending.subList(sortedCount, pending.size()).clear();
+            // forget entries that left range or belong to another dimension
+            fresh.removeIf(e -> {
+                if (e.dimension().equals(dimension) && (distSq(center, e.pos()) <= radiusSq || (requested != null && requested.test(e.pos())))) return false;
+                dropped++;
+                // a lost delta leaves the client behind just like a lost full chunk, so both go back to sync
+                if (synced != null) synced.remove(e.dimension(), e.pos());
+                return true;
+            });
+            fresh.sort(order);
+            if (pending.isEmpty()) {
+                pending.addAll(fresh);
+            } else {
+                for (Entry e : fresh) {
+                    int at = java.util.Collections.binarySearch(pending, e, order);
+                    pending.add(at < 0 ? -at - 1 : at, e);
+                }
+            }
+            sortedCount = pending.size();
+        }
+
+        int sent = 0;
+        List<NetworkHandler.LODDataPayload> batch = new ArrayList<>();
+        int batchBytes = 0;
+        while (sent < pending.size() && (rate <= 0 || tokens > 0) && (!credited || credits() > 0)) {
+            Entry e = pending.get(sent++);
+            chunksSent++;
+            if (batching && e.packet() instanceof NetworkHandler.LODDataPayload chunk) {
+                // split before the frame would outgrow the packet size limit or the reader's chunk count
+                if (!batch.isEmpty() && (batchBytes + e.bytes() > NetworkHandler.MAX_BATCH_BYTES || batch.size() >= NetworkHandler.MAX_BATCH_CHUNKS)) {
+                    sendBatch(player, batch);
+                    batch = new ArrayList<>();
+                    batchBytes = 0;
+                }
+                batch.add(chunk);
+                batchBytes += e.bytes();
+            } else {
+                ServerPlayNetworking.send(player, e.packet());
+                payloadsSent++;
+            }
+            // the bucket may go negative so oversized payloads still get through, paid back over the next ticks
+            tokens -= e.bytes();
+            bytesSent += e.bytes();
+        }
+        if (!batch.isEmpty()) sendBatch(player, batch);
+        pending.subList(0, sent).clear();
+        sortedCount -= sent;
+        if (credited && sent > 0) inFlight.addLast(new long[] { chunksSent, now });
+    }
+
+    private Entry removeAt(int index) {
+        if (index < sortedCount) sortedCount--;
+        return pending.remove(index);
+    }
+
+    private void sendBatch(ServerPlayer player, List<NetworkHandler.LODDataPayload> batch) {
+        if (batch.size() == 1) {
+            ServerPlayNetworking.send(player, batch.get(0));
+        } else {
+            ServerPlayNetworking.send(player, new NetworkHandler.LODBatchPayload(batch));
+        }
+        payloadsSent++;
+    }
+
+    private void dropFarthest(ServerPlayer player, SyncedChunkMap synced, LongPredicate requested) {
+        ChunkPos center = player.chunkPosition();
+        int farthest = 0;
+        long farthestDist = -1;
+        boolean farthestRequested = true;
+        for (int i = 0; i < pending.size(); i++) {
+            long pos = pending.get(i).pos();
+            boolean isRequested = requested != null && requested.test(pos);
+            // anything unrequested goes before a requested entry, however far
+            if (isRequested && !farthestRequested) continue;
+            long d = distSq(center, pos);
+            if (d > farthestDist || (farthestRequested && !isRequested)) {
+                farthestDist = d;
+                farthest = i;
+                farthestRequested = isRequested;
+            }
+        }
+        Entry e = removeAt(farthest);
+        dropped++;
+        if (synced != null) synced.remove(e.dimension(), e.pos());
+    }
+
+    private void updateRate(long nowNanos) {
+        long now = nowNanos / 1_000_000L;
+        if (lastRateTime == 0) {
+            lastRateTime = now;
+            lastRateBytes = bytesSent;
+            return;
+        }
+        long delta = now - lastRateTime;
+        if (delta >= 1000) {
+            byteRate = (bytesSent - lastRateBytes) / (delta / 1000.0);
+            lastRateBytes = bytesSent;
+            lastRateTime = now;
+        }
+    }
+
+    private static long distSq(ChunkPos center, long pos) {
+        long dx = ChunkPos.getX(pos) - center.x;
+        long dz = ChunkPos.getZ(pos) - center.z;
+        return dx * dx + dz * dz;
+    }
+
+    public synchronized int getDepth() { return pending.size(); }
+    public synchronized double getByteRate() { return byteRate; }
+    public synchronized long getBytesSent() { return bytesSent; }
+    public synchronized long getPayloadsSent() { return payloadsSent; }
+    public synchronized long getDropped() { return dropped; }
+    public synchronized long getCredits() { return Math.max(0, credits()); }
+    public synchronized double getRoundTripMs() { return rttMs; }
+    public synchronized long getStarvedDrains() { return starvedDrains; }
+
+    // total time spent with queued chunks and no credit left, including the current stretch
+    public synchronized long getStarvedMillis() {
+        long nanos = starvedNanos + (starvedSince != 0 ? System.nanoTime() - starvedSince : 0);
+        return nanos / 1_000_000L;
+    }
+}
@@ -0,0 +1,397 @@
+package com.ethan.voxyworldgenv2.network;
+
+import com.ethan.voxyworldgenv2.VoxyWorldGenV2;
+import com.ethan.voxyworldgenv2.core.ChunkPersistence;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.storage.LevelResource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * on-disk copy of the encoded lod for every chunk, so sync can serve chunks that are not loaded
+ * one file per 32x32 region: a 1024 entry header of (offset, length), then appended records
+ */
+public final class LODStore {
+    private static final LODStore INSTANCE = new LODStore();
+
+    // bump when the body layout changes, older stores are simply left unused
+    private static final int FORMAT_VERSION = 2;
+    private static final int REGION_SHIFT = 5;
+    private static final int ENTRIES = 1 << (REGION_SHIFT * 2);
+    private static final int HEADER_BYTES = ENTRIES * 8;
+    private static final int RECORD_HEADER = 9; // codec, minY, rawLength
+    private static final int MAX_OPEN_REGIONS = 64;
+    // rewrite a region once dead records take more than half of it
+    private static final long COMPACT_MIN_BYTES = 1024 * 1024;
+
+    private record Key(ResourceKey<Level> dimension, long region) {}
+
+    private final LinkedHashMap<Key, Region> open = new LinkedHashMap<>(64, 0.75f, true);
+
+    // newest write (payload) or invalidation (null) per chunk not yet on disk
+    private record ChunkKey(ResourceKey<Level> dimension, long pos) {}
+    private record Pending(ServerLevel level, ChunkPos pos, NetworkHandler.LODDataPayload payload) {}
+    private final LinkedHashMap<ChunkKey, Pending> pending = new LinkedHashMap<>();
+    private boolean draining = false;
+    private ThreadPoolExecutor writer;
+
+    private final AtomicLong reads = new AtomicLong(0);
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong bytesRead = new AtomicLong(0);
+    private final AtomicLong readNanos = new AtomicLong(0);
+    private final AtomicLong writes = new AtomicLong(0);
+
+    private LODStore() {}
+
+    public static LODStore getInstance() {
+        return INSTANCE;
+    }
+
+    // writes go through one background thread so the server thread never waits on disk
+    // it only ever holds the one drain task, the backlog is the pending map, which keeps one op per chunk
+    private synchronized ThreadPoolExecutor getWriter() {
+        if (writer == null) {
+            writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(),
+                    r -> {
+                        Thread t = new Thread(r, "voxy-lod-store");
+                        t.setDaemon(true);
+                        t.setPriority(Thread.NORM_PRIORITY - 1);
+                        return t;
+                    });
+        }
+        return writer;
+    }
+
+    public void write(ServerLevel level, ChunkPos pos, NetworkHandler.LODDataPayload payload) {
+        schedule(new Pending(level, pos, payload));
+    }
+
+    // hidden from reads right away, the record itself goes once the writer gets to it
+    public void invalidate(ServerLevel level, ChunkPos pos) {
+        schedule(new Pending(level, pos, null));
+    }
+
+    private void schedule(Pending op) {
+        boolean start;
+        synchronized (pending) {
+            pending.put(new ChunkKey(op.level().dimension(), op.pos().toLong()), op);
+            start = !draining;
+            draining = true;
+        }
+        if (start) {
+            try {
+                getWriter().execute(this::drain);
+            } catch (java.util.concurrent.RejectedExecutionException e) {
+                // shutting down, whatever is still pending is dropped with the writer
+                synchronized (pending) {
+                    draining = false;
+                }
+            }
+        }
+    }
+
+    // oldest chunk first, a chunk updated again while queued keeps its place and is written once
+    private void drain() {
+        while (true) {
+            ChunkKey key;
+            Pending op;
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    draining = false;
+                    return;
+                }
+                Map.Entry<ChunkKey, Pending> first = pending.entrySet().iterator().next();
+                key = first.getKey();
+                op = first.getValue();
+            }
+            Region region = acquire(op.level(), op.pos());
+            try {
+                if (op.payload() != null) {
+                    region.write(op.pos(), op.payload());
+                    writes.incrementAndGet();
+                } else {
+                    region.remove(op.pos());
+                }
+            } catch (IOException e) {
+                VoxyWorldGenV2.LOGGER.error("failed to update stored LOD for chunk " + op.pos(), e);
+            } finally {
+                release(region);
+            }
+            synchronized (pending) {
+                // a newer op queued meanwhile is picked up on a later pass
+                if (pending.get(key) == op) pending.remove(key);
+            }
+        }
+    }
+
+    public NetworkHandler.LODDataPayload read(ServerLevel level, ChunkPos pos) {
+        long start = System.nanoTime();
+        reads.incrementAndGet();
+        Pending op;
+        synchronized (pending) {
+            op = pending.get(new ChunkKey(level.dimension(), pos.toLong()));
+        }
+        // the disk copy is older than anything still queued for the chunk
+        if (op != null) {
+            if (op.payload() != null) hits.incrementAndGet();
+            return op.payload();
+        }
+        Region region = acquire(level, pos);
+        try {
+            NetworkHandler.LODDataPayload payload = region.read(pos);
+            if (payload != null) {
+                hits.incrementAndGet();
+                bytesRead.addAndGet(payload.body().length + RECORD_HEADER);
+            }
+            return payload;
+        } catch (IOException e) {
+            VoxyWorldGenV2.LOGGER.error("failed to read stored LOD for chunk " + pos, e);
+            return null;
+        } finally {
+            release(region);
+            readNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    // one instance per file for as long as anyone uses it, a second copy would append over the first one's records
+    private Region acquire(ServerLevel level, ChunkPos pos) {
+        Key key = new Key(level.dimension(), ChunkPos.asLong(pos.x >> REGION_SHIFT, pos.z >> REGION_SHIFT));
+        synchronized (open) {
+            Region region = open.get(key);
+            if (region == null) {
+                Path dir = level.getServer().getWorldPath(LevelResource.ROOT).resolve("voxy_lod").resolve("v" + FORMAT_VERSION).resolve(ChunkPersistence.getDimensionId(level.dimension()));
+                region = new Region(dir.resolve("r." + (pos.x >> REGION_SHIFT) + "." + (pos.z >> REGION_SHIFT) + ".bin"));
+                open.put(key, region);
+            }
+            region.users++;
+            trimOpen();
+            return region;
+        }
+    }
+
+    private void release(Region region) {
+        synchronized (open) {
+            region.users--;
+            trimOpen();
+        }
+    }
+
+    // close the least recently used files nobody is using, busy ones stay open past the limit until released
+    private void trimOpen() {
+        Iterator<Map.Entry<Key, Region>> it = open.entrySet().iterator();
+        while (open.size() > MAX_OPEN_REGIONS && it.hasNext()) {
+            Region region = it.next().getValue();
+            if (region.users > 0) continue;
+            region.close();
+            it.remove();
+        }
+    }
+
+    public void close() {
+        ThreadPoolExecutor w;
+        synchronized (this) {
+            w = writer;
+            writer = null;
+        }
+        if (w != null) {
+            w.shutdown();
+            try {
+                w.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (pending) {
+            pending.clear();
+            draining = false;
+        }
+        synchronized (open) {
+            open.values().forEach(Region::close);
+            open.clear();
+        }
+    }
+
+    public long getReads() { return reads.get(); }
+    public long getHits() { return hits.get(); }
+    public long getWrites() { return writes.get(); }
+
+    // bytes/s while actually reading, not averaged over idle time
+    public double getReadThroughput() {
+        long nanos = readNanos.get();
+        return nanos == 0 ? 0 : bytesRead.get() / (nanos / 1_000_000_000.0);
+    }
+
+    public void resetStats() {
+        reads.set(0);
+        hits.set(0);
+        bytesRead.set(0);
+        readNanos.set(0);
+        writes.set(0);
+    }
+
+    private static final class Region {
+        private final Path path;
+        private FileChannel channel;
+        private final int[] offsets = new int[ENTRIES];
+        private final int[] lengths = new int[ENTRIES];
+        private long liveBytes = 0;
+        // callers between acquire and release, guarded by the open map
+        private int users = 0;
+
+        Region(Path path) {
+            this.path = path;
+        }
+
+        private FileChannel channel(boolean create) throws IOException {
+            if (channel != null) return channel;
+            if (!create && !Files.exists(path)) return null;
+            Files.createDirectories(path.getParent());
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            liveBytes = 0;
+            if (channel.size() >= HEADER_BYTES) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                readFully(channel, header, 0);
+                header.flip();
+                for (int i = 0; i < ENTRIES; i++) {
+                    offsets[i] = header.getInt();
+                    lengths[i] = header.getInt();
+                    liveBytes += lengths[i];
+                }
+            } else {
+                java.util.Arrays.fill(offsets, 0);
+                java.util.Arrays.fill(lengths, 0);
+                channel.write(ByteBuffer.allocate(HEADER_BYTES), 0);
+            }
+            return channel;
+        }
+
+        synchronized NetworkHandler.LODDataPayload read(ChunkPos pos) throws IOException {
+            FileChannel ch = channel(false);
+            if (ch == null) return null;
+            int index = index(pos);
+            int length = lengths[index];
+            if (offsets[index] == 0 || length < RECORD_HEADER) return null;
+
+            ByteBuffer buf = ByteBuffer.allocate(length);
+            readFully(ch, buf, offsets[index]);
+            buf.flip();
+            byte codec = buf.get();
+            int minY = buf.getInt();
+            int rawLength = buf.getInt();
+            byte[] body = new byte[length - RECORD_HEADER];
+            buf.get(body);
+            return new NetworkHandler.LODDataPayload(pos, minY, (byte) 0, codec, rawLength, body);
+        }
+
+        synchronized void write(ChunkPos pos, NetworkHandler.LODDataPayload payload) throws IOException {
+            FileChannel ch = channel(true);
+            int length = RECORD_HEADER + payload.body().length;
+            ByteBuffer buf = ByteBuffer.allocate(length);
+            buf.put(payload.codec());
+            buf.putInt(payload.minY());
+            buf.putInt(payload.rawLength());
+            buf.put(payload.body());
+            buf.flip();
+
+            long offset = ch.size();
+            if (offset + length > Integer.MAX_VALUE) {
+                compact();
+                ch = channel(true);
+                offset = ch.size();
+            }
+            while (buf.hasRemaining()) {
+                ch.write(buf, offset + buf.position());
+            }
+            setEntry(index(pos), (int) offset, length);
+
+            // appends leave the previous record behind, reclaim once half the file is dead
+            long size = ch.size();
+            if (size > COMPACT_MIN_BYTES && size - HEADER_BYTES > liveBytes * 2) {
+                compact();
+            }
+        }
+
+        synchronized void remove(ChunkPos pos) throws IOException {
+            if (channel(false) == null) return;
+            int index = index(pos);
+            if (offsets[index] != 0) setEntry(index, 0, 0);
+        }
+
+        private void setEntry(int index, int offset, int length) throws IOException {
+            liveBytes += length - lengths[index];
+            offsets[index] = offset;
+            lengths[index] = length;
+            ByteBuffer entry = ByteBuffer.allocate(8);
+            entry.putInt(offset).putInt(length).flip();
+            channel.write(entry, (long) index * 8);
+        }
+
+        private void compact() throws IOException {
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            int[] newOffsets = new int[ENTRIES];
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                long position = HEADER_BYTES;
+                for (int i = 0; i < ENTRIES; i++) {
+                    if (offsets[i] == 0) continue;
+                    ByteBuffer record = ByteBuffer.allocate(lengths[i]);
+                    readFully(channel, record, offsets[i]);
+                    record.flip();
+                    newOffsets[i] = (int) position;
+                    while (record.hasRemaining()) {
+                        position += out.write(record, position);
+                    }
+                }
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                for (int i = 0; i < ENTRIES; i++) {
+                    header.putInt(newOffsets[i]).putInt(newOffsets[i] == 0 ? 0 : lengths[i]);
+                }
+                header.flip();
+                while (header.hasRemaining()) {
+                    out.write(header, header.position());
+                }
+            }
+            close();
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel(true);
+        }
+
+        synchronized void close() {
+            if (channel == null) return;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                VoxyWorldGenV2.LOGGER.error("failed to close LOD region " + path, e);
+            }
+            channel = null;
+        }
+
+        private static int index(ChunkPos pos) {
+            int mask = (1 << REGION_SHIFT) - 1;
+            return (pos.x & mask) + ((pos.z & mask) << REGION_SHIFT);
+        }
+
+        private static void readFully(FileChannel ch, ByteBuffer buf, long offset) throws IOException {
+            while (buf.hasRemaining()) {
+                int n = ch.read(buf, offset + buf.position());
+                if (n < 0) throw new IOException("unexpected end of LOD region");
+            }
+        }
+    }
+}
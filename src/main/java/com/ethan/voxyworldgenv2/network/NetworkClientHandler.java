@@ -1,83 +1,306 @@
 package com.ethan.voxyworldgenv2.network;
 
 import com.ethan.voxyworldgenv2.VoxyWorldGenV2;
+import com.ethan.voxyworldgenv2.core.Config;
 import com.ethan.voxyworldgenv2.integration.VoxyIntegration;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.multiplayer.ClientLevel;
-import net.minecraft.world.level.chunk.DataLayer;
-import net.minecraft.world.level.chunk.LevelChunkSection;
-import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.client.multiplayer.ServerData;
 import net.minecraft.world.level.chunk.PalettedContainerFactory;
-import net.minecraft.world.level.biome.Biome;
-import net.minecraft.core.Holder;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.storage.LevelResource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class NetworkClientHandler {
+    private static final int CLIENT_CAPABILITIES = NetworkHandler.CAP_COMPRESSION | NetworkHandler.CAP_BATCH | NetworkHandler.CAP_RESYNC | NetworkHandler.CAP_DOWNSAMPLE | NetworkHandler.CAP_CREDIT | NetworkHandler.CAP_REQUEST;
+    private static final int DECODE_QUEUE_CAPACITY = 256;
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+    // one single-threaded lane per decoder, a chunk always lands on the same lane so its full copy and deltas apply in arrival order
+    private static volatile ThreadPoolExecutor[] decodeLanes;
+
+    private static volatile boolean resyncEnabled = false;
+
+    // chunks handed back to the server as credit, counted once their decode task finished
+    private static final AtomicLong chunksIngested = new AtomicLong();
+    private static volatile boolean creditEnabled = false;
+    private static long reportedIngested = -1;
+    private static int reportedWindow = -1;
+
+    // a detached camera (spectator, freecam) far from the player asks for the area it looks at
+    private static final int CAMERA_REQUEST_DISTANCE = 32;
+    private static final int CAMERA_REQUEST_HALF_SPAN = 32;
+    private static volatile boolean requestEnabled = false;
+    private static ChunkPos lastCameraRequest = null;
     
     public static void init() {
         ClientPlayNetworking.registerGlobalReceiver(NetworkHandler.HandshakePayload.TYPE, (payload, context) -> {
             boolean serverHasMod = payload.serverHasMod();
+            int accepted = payload.capabilities() & CLIENT_CAPABILITIES;
+            if (!Config.DATA.persistentLodIndex) accepted &= ~NetworkHandler.CAP_RESYNC;
+            boolean resync = (accepted & NetworkHandler.CAP_RESYNC) != 0;
+            boolean credit = (accepted & NetworkHandler.CAP_CREDIT) != 0;
+            boolean request = (accepted & NetworkHandler.CAP_REQUEST) != 0;
             context.client().execute(() -> {
                 NetworkState.setServerConnected(serverHasMod);
+                requestEnabled = request;
+                lastCameraRequest = null;
+                resyncEnabled = resync;
+                if (resync) beginResync(context.client());
             });
+            // echo back what we support so the server can enable it for us
+            context.responseSender().sendPacket(new NetworkHandler.HandshakePayload(true, accepted));
+            if (credit) {
+                // the server sends nothing until the first grant arrives
+                chunksIngested.set(0);
+                int window = creditWindow();
+                context.responseSender().sendPacket(new NetworkHandler.LODCreditPayload(0, window));
+                context.client().execute(() -> {
+                    reportedIngested = 0;
+                    reportedWindow = window;
+                    creditEnabled = true;
+                });
+            }
         });
 
         ClientPlayNetworking.registerGlobalReceiver(NetworkHandler.LODDataPayload.TYPE, (payload, context) -> {
-            context.client().execute(() -> {
-                handleLODData(payload);
-            });
+            submit(context.client().level, List.of(payload), true);
         });
+
+        // one decode task for the whole batch instead of one per chunk
+        ClientPlayNetworking.registerGlobalReceiver(NetworkHandler.LODBatchPayload.TYPE, (payload, context) -> {
+            submit(context.client().level, payload.chunks(), true);
+        });
+
+        // deltas share the chunk body format, sections that became air are included so voxy clears them
+        ClientPlayNetworking.registerGlobalReceiver(NetworkHandler.LODDeltaPayload.TYPE, (payload, context) -> {
+            submit(context.client().level, List.of(payload.data()), false);
+        });
+    }
+
+    // reopen the index when the player changes dimension and tell the server what we already have there
+    public static void tick(Minecraft client) {
+        if (creditEnabled) grantCredits();
+        if (requestEnabled) requestAroundCamera(client);
+        if (!resyncEnabled || client.level == null) return;
+        if (!client.level.dimension().equals(LODClientIndex.getInstance().getDimension())) {
+            beginResync(client);
+        }
+    }
+
+    // report progress at most once a tick, and only when something changed
+    private static void grantCredits() {
+        long ingested = chunksIngested.get();
+        int window = creditWindow();
+        if (ingested == reportedIngested && window == reportedWindow) return;
+        ClientPlayNetworking.send(new NetworkHandler.LODCreditPayload(ingested, window));
+        reportedIngested = ingested;
+        reportedWindow = window;
+    }
+
+    // full window while the decoder keeps up, closing as its queue fills
+    private static int creditWindow() {
+        int window = Math.max(1, Config.DATA.lodCreditWindow);
+        int depth = Math.min(getDecodeQueueDepth(), DECODE_QUEUE_CAPACITY);
+        return window - (int) ((long) window * depth / DECODE_QUEUE_CAPACITY);
+    }
+
+    // lets map mods and the like stream an area before the player gets there, returns false when the server cannot take requests
+    public static boolean requestArea(ResourceKey<Level> dimension, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ, int priority) {
+        if (!requestEnabled) return false;
+        ClientPlayNetworking.send(new NetworkHandler.LODRequestPayload(dimension, minChunkX, minChunkZ, maxChunkX, maxChunkZ, priority));
+        return true;
+    }
+
+    private static void requestAroundCamera(Minecraft client) {
+        var camera = client.getCameraEntity();
+        if (camera == null || client.player == null || client.level == null || camera == client.player) return;
+        ChunkPos cameraPos = camera.chunkPosition();
+        ChunkPos playerPos = client.player.chunkPosition();
+        long dx = cameraPos.x - playerPos.x;
+        long dz = cameraPos.z - playerPos.z;
+        if (dx * dx + dz * dz < (long) CAMERA_REQUEST_DISTANCE * CAMERA_REQUEST_DISTANCE) return;
+        // re-request only once the camera moved a good part of the previous area
+        if (lastCameraRequest != null && Math.abs(lastCameraRequest.x - cameraPos.x) < CAMERA_REQUEST_HALF_SPAN / 2
+                && Math.abs(lastCameraRequest.z - cameraPos.z) < CAMERA_REQUEST_HALF_SPAN / 2) return;
+        lastCameraRequest = cameraPos;
+        requestArea(client.level.dimension(), cameraPos.x - CAMERA_REQUEST_HALF_SPAN, cameraPos.z - CAMERA_REQUEST_HALF_SPAN,
+                cameraPos.x + CAMERA_REQUEST_HALF_SPAN, cameraPos.z + CAMERA_REQUEST_HALF_SPAN, 1);
+    }
+
+    public static void onDisconnect() {
+        resyncEnabled = false;
+        requestEnabled = false;
+        lastCameraRequest = null;
+        creditEnabled = false;
+        clearDecodeQueue();
+        LODClientIndex.getInstance().close();
+    }
+
+    private static void beginResync(Minecraft client) {
+        if (client.level == null) return;
+        ResourceKey<Level> dimension = client.level.dimension();
+        LODClientIndex index = LODClientIndex.getInstance();
+        index.open(serverKey(client), dimension);
+
+        ChunkPos center = client.player != null ? client.player.chunkPosition() : ChunkPos.ZERO;
+        List<NetworkHandler.LODSummaryPayload.RegionSummary> regions = index.summarize(center);
+        int max = NetworkHandler.MAX_SUMMARY_REGIONS;
+        // always send at least one packet so the server stops holding back the initial sync
+        for (int start = 0; start == 0 || start < regions.size(); start += max) {
+            int end = Math.min(regions.size(), start + max);
+            ClientPlayNetworking.send(new NetworkHandler.LODSummaryPayload(dimension, List.copyOf(regions.subList(start, end)), end >= regions.size()));
+        }
+    }
+
+    private static String serverKey(Minecraft client) {
+        if (client.getSingleplayerServer() != null) {
+            return "local_" + client.getSingleplayerServer().getWorldPath(LevelResource.ROOT).toAbsolutePath().normalize().getFileName();
+        }
+        ServerData data = client.getCurrentServer();
+        return data != null ? data.ip : "unknown";
+    }
+
+    private static synchronized ThreadPoolExecutor[] getDecodeLanes() {
+        if (decodeLanes == null) {
+            // resolve voxy up front instead of inside the first decode
+            VoxyIntegration.isVoxyAvailable();
+            int threadCount = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+            int capacity = Math.max(1, DECODE_QUEUE_CAPACITY / threadCount);
+            ThreadPoolExecutor[] lanes = new ThreadPoolExecutor[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                // a full lane rejects instead of parking the network thread, the credit window keeps it from filling
+                lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>(capacity),
+                        r -> {
+                            Thread t = new Thread(r, "voxy-lod-decoder-" + threadCounter.getAndIncrement());
+                            t.setDaemon(true);
+                            t.setPriority(Thread.NORM_PRIORITY - 1);
+                            return t;
+                        },
+                        new ThreadPoolExecutor.AbortPolicy());
+            }
+            decodeLanes = lanes;
+        }
+        return decodeLanes;
+    }
+
+    private static int laneOf(long key, int lanes) {
+        return (int) Math.floorMod(it.unimi.dsi.fastutil.HashCommon.mix(key), (long) lanes);
     }
 
-    @SuppressWarnings("unchecked")
-    private static void handleLODData(NetworkHandler.LODDataPayload payload) {
-        ClientLevel level = Minecraft.getInstance().level;
-        if (level == null) return;
+    // decode and ingest off the render thread, the level is captured on arrival so a dimension change cannot mix data
+    private static void submit(ClientLevel level, List<NetworkHandler.LODDataPayload> chunks, boolean full) {
+        if (level == null) {
+            chunksIngested.addAndGet(chunks.size());
+            return;
+        }
+        long queuedAt = System.nanoTime();
+        ThreadPoolExecutor[] lanes = getDecodeLanes();
+        if (lanes.length == 1) {
+            execute(lanes[0], level, chunks, full, queuedAt);
+            return;
+        }
+        // one task per lane the batch touches instead of one per chunk
+        @SuppressWarnings("unchecked")
+        List<NetworkHandler.LODDataPayload>[] byLane = new List[lanes.length];
+        for (NetworkHandler.LODDataPayload chunk : chunks) {
+            int lane = laneOf(chunk.pos().toLong(), lanes.length);
+            if (byLane[lane] == null) byLane[lane] = new ArrayList<>();
+            byLane[lane].add(chunk);
+        }
+        for (int i = 0; i < lanes.length; i++) {
+            if (byLane[i] != null) execute(lanes[i], level, byLane[i], full, queuedAt);
+        }
+    }
+
+    private static void execute(ThreadPoolExecutor lane, ClientLevel level, List<NetworkHandler.LODDataPayload> chunks, boolean full, long queuedAt) {
+        try {
+            lane.execute(() -> {
+                try {
+                    for (NetworkHandler.LODDataPayload chunk : chunks) {
+                        handleLODData(level, chunk, full);
+                    }
+                } finally {
+                    // failed chunks still return their credit, or the server would stall on them
+                    chunksIngested.addAndGet(chunks.size());
+                }
+                NetworkState.recordIngestLatency(System.nanoTime() - queuedAt);
+            });
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            // dropped chunks are forgotten so the next resync asks for them again, and still return their credit
+            LODClientIndex index = LODClientIndex.getInstance();
+            for (NetworkHandler.LODDataPayload chunk : chunks) {
+                index.forget(level.dimension(), chunk.pos().toLong());
+            }
+            chunksIngested.addAndGet(chunks.size());
+            VoxyWorldGenV2.LOGGER.warn("lod decode queue full, dropped {} chunks", chunks.size());
+        }
+    }
+
+    public static int getDecodeQueueDepth() {
+        ThreadPoolExecutor[] lanes = decodeLanes;
+        if (lanes == null) return 0;
+        int depth = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            depth += lane.getQueue().size() + lane.getActiveCount();
+        }
+        return depth;
+    }
+
+    public static void clearDecodeQueue() {
+        ThreadPoolExecutor[] lanes = decodeLanes;
+        if (lanes == null) return;
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.getQueue().clear();
+        }
+    }
+
+    private static void handleLODData(ClientLevel level, NetworkHandler.LODDataPayload payload, boolean full) {
+        PalettedContainerFactory factory = NetworkHandler.factoryFor(level.registryAccess());
         
         // calculate approximate payload size
-        long bytes = 0;
-        for (NetworkHandler.LODDataPayload.SectionData sd : payload.sections()) {
-            bytes += sd.states().length;
-            bytes += sd.biomes().length;
-            if (sd.blockLight() != null) bytes += sd.blockLight().length;
-            if (sd.skyLight() != null) bytes += sd.skyLight().length;
+        NetworkState.incrementReceived(payload.estimatedSize());
+
+        boolean[] ingested = { VoxyIntegration.isVoxyAvailable() };
+        long[] ingestNanos = { 0 };
+        byte[] raw;
+        long start = System.nanoTime();
+        try {
+            raw = payload.rawBody();
+            // sections are parsed one at a time and handed to voxy before the next is read
+            NetworkHandler.LODDataPayload.readSections(raw, payload.scale(), level.registryAccess(), factory, (y, section, blockLight, skyLight) -> {
+                long ingestStart = System.nanoTime();
+                try {
+                    VoxyIntegration.rawIngest(level, section, payload.pos().x, y, payload.pos().z, blockLight, skyLight);
+                } catch (Exception e) {
+                    ingested[0] = false;
+                    VoxyWorldGenV2.LOGGER.error("failed to handle LOD data for chunk " + payload.pos(), e);
+                }
+                ingestNanos[0] += System.nanoTime() - ingestStart;
+            });
+        } catch (Exception e) {
+            VoxyWorldGenV2.LOGGER.error("failed to decode LOD data for chunk " + payload.pos(), e);
+            LODClientIndex.getInstance().forget(level.dimension(), payload.pos().toLong());
+            return;
         }
-        NetworkState.incrementReceived(bytes);
-
-        for (NetworkHandler.LODDataPayload.SectionData sectionData : payload.sections()) {
-            io.netty.buffer.ByteBuf statesRaw = io.netty.buffer.Unpooled.wrappedBuffer(sectionData.states());
-            io.netty.buffer.ByteBuf biomesRaw = io.netty.buffer.Unpooled.wrappedBuffer(sectionData.biomes());
-            try {
-                // recreate section using PalettedContainerFactory
-                PalettedContainerFactory factory = PalettedContainerFactory.create(level.registryAccess());
-                LevelChunkSection section = new LevelChunkSection(factory);
-                
-                // we need to read the states and biomes back using RegistryFriendlyByteBuf for palette consistency
-                net.minecraft.network.RegistryFriendlyByteBuf statesBuf = new net.minecraft.network.RegistryFriendlyByteBuf(
-                    new net.minecraft.network.FriendlyByteBuf(statesRaw), 
-                    level.registryAccess()
-                );
-                ((PalettedContainer<BlockState>) section.getStates()).read(statesBuf);
-                
-                net.minecraft.network.RegistryFriendlyByteBuf biomesBuf = new net.minecraft.network.RegistryFriendlyByteBuf(
-                    new net.minecraft.network.FriendlyByteBuf(biomesRaw), 
-                    level.registryAccess()
-                );
-                ((PalettedContainer<Holder<Biome>>) section.getBiomes()).read(biomesBuf);
-                
-                // ingest into voxy
-                DataLayer bl = sectionData.blockLight() != null ? new DataLayer(sectionData.blockLight()) : null;
-                DataLayer sl = sectionData.skyLight() != null ? new DataLayer(sectionData.skyLight()) : null;
-                
-                VoxyIntegration.rawIngest(level, section, payload.pos().x, sectionData.y(), payload.pos().z, bl, sl);
-                
-            } catch (Exception e) {
-                VoxyWorldGenV2.LOGGER.error("failed to handle LOD data for chunk " + payload.pos(), e);
-            } finally {
-                statesRaw.release();
-                biomesRaw.release();
-            }
+        NetworkState.recordDecode(System.nanoTime() - start - ingestNanos[0], payload.rawLength(), payload.body().length);
+
+        // a delta or a downsampled body leaves us without a full-chunk hash, so the next resync resends that chunk
+        long key = payload.pos().toLong();
+        if (full && ingested[0] && payload.scale() == 0) {
+            LODClientIndex.getInstance().record(level.dimension(), key, LODHashes.hash(raw));
+        } else {
+            LODClientIndex.getInstance().forget(level.dimension(), key);
         }
     }
 }
@@ -1,39 +1,133 @@
 package com.ethan.voxyworldgenv2.network;
 
 import com.ethan.voxyworldgenv2.VoxyWorldGenV2;
+import com.ethan.voxyworldgenv2.core.ChunkHashStore;
+import com.ethan.voxyworldgenv2.core.ChunkSnapshot;
+import com.ethan.voxyworldgenv2.core.ChunkUpdateTracker;
+import com.ethan.voxyworldgenv2.core.Config;
+import com.ethan.voxyworldgenv2.core.LODBands;
+import com.ethan.voxyworldgenv2.core.LODRequests;
+import com.ethan.voxyworldgenv2.core.PlayerSpatialIndex;
 import com.ethan.voxyworldgenv2.core.PlayerTracker;
+import com.ethan.voxyworldgenv2.stats.NetworkStats;
 import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.core.Holder;
+import net.minecraft.core.RegistryAccess;
 import net.minecraft.core.SectionPos;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.network.RegistryFriendlyByteBuf;
 import net.minecraft.network.codec.StreamCodec;
 import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
 import net.minecraft.resources.Identifier;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
 import net.minecraft.world.level.LightLayer;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.chunk.DataLayer;
 import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.level.chunk.PalettedContainerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 public class NetworkHandler {
     public static final Identifier HANDSHAKE_ID = Identifier.parse(VoxyWorldGenV2.MOD_ID + ":handshake");
     public static final Identifier LOD_DATA_ID = Identifier.parse(VoxyWorldGenV2.MOD_ID + ":lod_data");
+    public static final Identifier LOD_DELTA_ID = Identifier.parse(VoxyWorldGenV2.MOD_ID + ":lod_delta");
+    public static final Identifier LOD_BATCH_ID = Identifier.parse(VoxyWorldGenV2.MOD_ID + ":lod_batch");
+    public static final Identifier LOD_SUMMARY_ID = Identifier.parse(VoxyWorldGenV2.MOD_ID + ":lod_summary");
+    public static final Identifier LOD_CREDIT_ID = Identifier.parse(VoxyWorldGenV2.MOD_ID + ":lod_credit");
+    public static final Identifier LOD_REQUEST_ID = Identifier.parse(VoxyWorldGenV2.MOD_ID + ":lod_request");
 
-    public record HandshakePayload(boolean serverHasMod) implements CustomPacketPayload {
+    // stay well below the 1 MiB custom payload limit, leaving room for framing
+    public static final int MAX_BATCH_BYTES = 1024 * 1024 - 64 * 1024;
+    // tiny chunks could fit more under the byte limit than the reader accepts
+    public static final int MAX_BATCH_CHUNKS = 4096;
+
+    private static final NetworkStats STATS = new NetworkStats();
+    private static final long ALL_SECTIONS = -1L;
+    public static final int BROADCAST_RANGE_BLOCKS = 4096;
+
+    // capability bits negotiated through the handshake
+    public static final int CAP_COMPRESSION = 1;
+    public static final int CAP_BATCH = 2;
+    public static final int CAP_RESYNC = 4;
+    public static final int CAP_DOWNSAMPLE = 8;
+    public static final int CAP_CREDIT = 16;
+    public static final int CAP_REQUEST = 32;
+
+    // keeps each summary packet under the 32 KiB serverbound payload limit
+    public static final int MAX_SUMMARY_REGIONS = 1024;
+    // every summary region costs up to 64 hash lookups on the server thread, so a window is capped as a whole
+    public static final int MAX_RESYNC_REGIONS = 16 * MAX_SUMMARY_REGIONS;
+
+    // containers only depend on the registries, so one factory per registry set serves every section
+    // an integrated host keeps the server's and the client's registries side by side
+    private static final java.util.Map<RegistryAccess, PalettedContainerFactory> factories = new java.util.WeakHashMap<>();
+
+    public record HandshakePayload(boolean serverHasMod, int capabilities) implements CustomPacketPayload {
         public static final Type<HandshakePayload> TYPE = new Type<>(HANDSHAKE_ID);
         public static final StreamCodec<FriendlyByteBuf, HandshakePayload> CODEC = CustomPacketPayload.codec(HandshakePayload::write, HandshakePayload::new);
 
         public HandshakePayload(FriendlyByteBuf buf) {
-            this(buf.readBoolean());
+            this(buf.readBoolean(), buf.readVarInt());
         }
 
         public void write(FriendlyByteBuf buf) {
             buf.writeBoolean(this.serverHasMod);
+            buf.writeVarInt(this.capabilities);
+        }
+
+        @Override
+        public Type<? extends CustomPacketPayload> type() {
+            return TYPE;
+        }
+    }
+
+    // flow control: chunks the client has finished with so far, and how many more it will take on top of that
+    public record LODCreditPayload(long ingested, int window) implements CustomPacketPayload {
+        public static final Type<LODCreditPayload> TYPE = new Type<>(LOD_CREDIT_ID);
+        public static final StreamCodec<FriendlyByteBuf, LODCreditPayload> CODEC = CustomPacketPayload.codec(LODCreditPayload::write, LODCreditPayload::new);
+
+        public LODCreditPayload(FriendlyByteBuf buf) {
+            this(buf.readVarLong(), buf.readVarInt());
+        }
+
+        public void write(FriendlyByteBuf buf) {
+            buf.writeVarLong(this.ingested);
+            buf.writeVarInt(this.window);
+        }
+
+        @Override
+        public Type<? extends CustomPacketPayload> type() {
+            return TYPE;
+        }
+    }
+
+    // a chunk rectangle the client is about to look at, priority above zero jumps ahead of the player's own surroundings
+    public record LODRequestPayload(ResourceKey<Level> dimension, int minX, int minZ, int maxX, int maxZ, int priority) implements CustomPacketPayload {
+        public static final Type<LODRequestPayload> TYPE = new Type<>(LOD_REQUEST_ID);
+        public static final StreamCodec<FriendlyByteBuf, LODRequestPayload> CODEC = CustomPacketPayload.codec(LODRequestPayload::write, LODRequestPayload::new);
+
+        public LODRequestPayload(FriendlyByteBuf buf) {
+            this(buf.readResourceKey(net.minecraft.core.registries.Registries.DIMENSION), buf.readVarInt(), buf.readVarInt(), buf.readVarInt(), buf.readVarInt(), buf.readVarInt());
+        }
+
+        public void write(FriendlyByteBuf buf) {
+            buf.writeResourceKey(dimension);
+            buf.writeVarInt(minX);
+            buf.writeVarInt(minZ);
+            buf.writeVarInt(maxX);
+            buf.writeVarInt(maxZ);
+            buf.writeVarInt(priority);
         }
 
         @Override
@@ -42,39 +136,170 @@ public class NetworkHandler {
         }
     }
 
-    public record LODDataPayload(ChunkPos pos, int minY, List<SectionData> sections) implements CustomPacketPayload {
+    public record LODDataPayload(ChunkPos pos, int minY, byte scale, byte codec, int rawLength, byte[] body) implements CustomPacketPayload {
         public static final Type<LODDataPayload> TYPE = new Type<>(LOD_DATA_ID);
         public static final StreamCodec<RegistryFriendlyByteBuf, LODDataPayload> CODEC = CustomPacketPayload.codec(LODDataPayload::write, LODDataPayload::new);
 
-        public record SectionData(int y, byte[] states, byte[] biomes, byte[] blockLight, byte[] skyLight) {
-            public void write(RegistryFriendlyByteBuf buf) {
-                buf.writeInt(y);
-                buf.writeByteArray(states);
-                buf.writeByteArray(biomes);
-                buf.writeNullable(blockLight, (b, a) -> b.writeByteArray(a));
-                buf.writeNullable(skyLight, (b, a) -> b.writeByteArray(a));
-            }
+        // receives sections as they are parsed out of a body, light may be null when absent
+        @FunctionalInterface
+        public interface SectionConsumer {
+            void accept(int y, LevelChunkSection section, DataLayer blockLight, DataLayer skyLight);
+        }
+
+        public LODDataPayload(RegistryFriendlyByteBuf buf) {
+            this(buf.readChunkPos(), buf.readInt(), buf.readByte(), buf.readByte(), buf.readVarInt(), buf.readByteArray());
+        }
+
+        public boolean isCompressed() {
+            return codec != LODCompression.CODEC_RAW;
+        }
+
+        public LODDataPayload compress(byte targetCodec, int level) {
+            if (isCompressed()) return this;
+            byte[] packed = LODCompression.compress(body, targetCodec, level);
+            // keep the raw body when deflate does not pay for itself
+            if (packed.length >= body.length) return this;
+            return new LODDataPayload(pos, minY, scale, targetCodec, rawLength, packed);
+        }
 
-            public static SectionData read(RegistryFriendlyByteBuf buf) {
-                return new SectionData(
-                    buf.readInt(), 
-                    buf.readByteArray(), 
-                    buf.readByteArray(), 
-                    buf.readNullable(b -> b.readByteArray()), 
-                    buf.readNullable(b -> b.readByteArray())
-                );
+        public LODDataPayload decompress() throws java.io.IOException {
+            if (!isCompressed()) return this;
+            return new LODDataPayload(pos, minY, scale, LODCompression.CODEC_RAW, rawLength, LODCompression.decompress(body, codec, rawLength));
+        }
+
+        public byte[] rawBody() throws java.io.IOException {
+            return isCompressed() ? LODCompression.decompress(body, codec, rawLength) : body;
+        }
+
+        // palettes are read straight out of the body into fresh sections, no per-section byte arrays
+        // downsampled bodies carry a coarse cell grid instead and are expanded back to full sections
+        @SuppressWarnings("unchecked")
+        public static int readSections(byte[] raw, int scale, RegistryAccess registryAccess, PalettedContainerFactory factory, SectionConsumer consumer) {
+            io.netty.buffer.ByteBuf wrapped = io.netty.buffer.Unpooled.wrappedBuffer(raw);
+            try {
+                RegistryFriendlyByteBuf buf = new RegistryFriendlyByteBuf(wrapped, registryAccess);
+                int count = buf.readVarInt();
+                if (count < 0 || count > 4096) throw new IllegalStateException("invalid lod section count " + count);
+                for (int i = 0; i < count; i++) {
+                    int y = buf.readInt();
+                    LevelChunkSection section;
+                    if (scale > 0) {
+                        section = LODDownsampler.readCells(buf, scale, factory);
+                    } else {
+                        section = new LevelChunkSection(factory);
+                        ((PalettedContainer<BlockState>) section.getStates()).read(buf);
+                        ((PalettedContainer<Holder<Biome>>) section.getBiomes()).read(buf);
+                    }
+                    DataLayer blockLight = LODLightCodec.read(buf);
+                    DataLayer skyLight = LODLightCodec.read(buf);
+                    consumer.accept(y, section, blockLight, skyLight);
+                }
+                return count;
+            } finally {
+                wrapped.release();
             }
         }
 
-        public LODDataPayload(RegistryFriendlyByteBuf buf) {
-            this(buf.readChunkPos(), buf.readInt(), buf.readCollection(ArrayList::new, b -> SectionData.read((RegistryFriendlyByteBuf) b)));
+        public long estimatedSize() {
+            return body.length;
         }
 
         public void write(RegistryFriendlyByteBuf buf) {
             buf.writeChunkPos(pos);
             buf.writeInt(minY);
-            // cast to avoid ambiguous writeCollection / BiConsumer type issues
-            buf.writeCollection(sections, (b, s) -> s.write((RegistryFriendlyByteBuf) b));
+            buf.writeByte(scale);
+            buf.writeByte(codec);
+            buf.writeVarInt(rawLength);
+            buf.writeByteArray(body);
+        }
+
+        @Override
+        public Type<? extends CustomPacketPayload> type() {
+            return TYPE;
+        }
+    }
+
+    // only the sections that changed since the last rebroadcast, including ones that became air
+    public record LODDeltaPayload(LODDataPayload data) implements CustomPacketPayload {
+        public static final Type<LODDeltaPayload> TYPE = new Type<>(LOD_DELTA_ID);
+        public static final StreamCodec<RegistryFriendlyByteBuf, LODDeltaPayload> CODEC = CustomPacketPayload.codec(LODDeltaPayload::write, LODDeltaPayload::new);
+
+        public LODDeltaPayload(RegistryFriendlyByteBuf buf) {
+            this(new LODDataPayload(buf));
+        }
+
+        public void write(RegistryFriendlyByteBuf buf) {
+            data.write(buf);
+        }
+
+        @Override
+        public Type<? extends CustomPacketPayload> type() {
+            return TYPE;
+        }
+    }
+
+    // many chunk bodies in one frame, all compressed against the same per-dimension dictionaries
+    public record LODBatchPayload(List<LODDataPayload> chunks) implements CustomPacketPayload {
+        public static final Type<LODBatchPayload> TYPE = new Type<>(LOD_BATCH_ID);
+        public static final StreamCodec<RegistryFriendlyByteBuf, LODBatchPayload> CODEC = CustomPacketPayload.codec(LODBatchPayload::write, LODBatchPayload::new);
+
+        public LODBatchPayload(RegistryFriendlyByteBuf buf) {
+            this(readChunks(buf));
+        }
+
+        private static List<LODDataPayload> readChunks(RegistryFriendlyByteBuf buf) {
+            int count = buf.readVarInt();
+            if (count < 0 || count > MAX_BATCH_CHUNKS) throw new IllegalStateException("invalid lod batch size " + count);
+            List<LODDataPayload> chunks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                chunks.add(new LODDataPayload(buf));
+            }
+            return chunks;
+        }
+
+        public void write(RegistryFriendlyByteBuf buf) {
+            buf.writeVarInt(chunks.size());
+            for (LODDataPayload chunk : chunks) {
+                chunk.write(buf);
+            }
+        }
+
+        @Override
+        public Type<? extends CustomPacketPayload> type() {
+            return TYPE;
+        }
+    }
+
+    // per-region digests of the hashes a client already ingested, sent after the handshake and on dimension change
+    public record LODSummaryPayload(ResourceKey<Level> dimension, List<RegionSummary> regions, boolean last) implements CustomPacketPayload {
+        public static final Type<LODSummaryPayload> TYPE = new Type<>(LOD_SUMMARY_ID);
+        public static final StreamCodec<FriendlyByteBuf, LODSummaryPayload> CODEC = CustomPacketPayload.codec(LODSummaryPayload::write, LODSummaryPayload::new);
+
+        public record RegionSummary(long region, long digest, int count) {}
+
+        public LODSummaryPayload(FriendlyByteBuf buf) {
+            this(buf.readResourceKey(net.minecraft.core.registries.Registries.DIMENSION), readRegions(buf), buf.readBoolean());
+        }
+
+        private static List<RegionSummary> readRegions(FriendlyByteBuf buf) {
+            int count = buf.readVarInt();
+            if (count < 0 || count > MAX_SUMMARY_REGIONS) throw new IllegalStateException("invalid lod summary size " + count);
+            List<RegionSummary> regions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                regions.add(new RegionSummary(buf.readLong(), buf.readLong(), buf.readVarInt()));
+            }
+            return regions;
+        }
+
+        public void write(FriendlyByteBuf buf) {
+            buf.writeResourceKey(dimension);
+            buf.writeVarInt(regions.size());
+            for (RegionSummary region : regions) {
+                buf.writeLong(region.region());
+                buf.writeLong(region.digest());
+                buf.writeVarInt(region.count());
+            }
+            buf.writeBoolean(last);
         }
 
         @Override
@@ -88,130 +313,386 @@ public class NetworkHandler {
         PayloadTypeRegistry.playS2C().register(HandshakePayload.TYPE, HandshakePayload.CODEC);
         
         PayloadTypeRegistry.playS2C().register(LODDataPayload.TYPE, LODDataPayload.CODEC);
+        PayloadTypeRegistry.playS2C().register(LODDeltaPayload.TYPE, LODDeltaPayload.CODEC);
+        PayloadTypeRegistry.playS2C().register(LODBatchPayload.TYPE, LODBatchPayload.CODEC);
+        PayloadTypeRegistry.playC2S().register(LODSummaryPayload.TYPE, LODSummaryPayload.CODEC);
+        PayloadTypeRegistry.playC2S().register(LODCreditPayload.TYPE, LODCreditPayload.CODEC);
+        PayloadTypeRegistry.playC2S().register(LODRequestPayload.TYPE, LODRequestPayload.CODEC);
+
+        // client echoes the capabilities it accepts
+        ServerPlayNetworking.registerGlobalReceiver(HandshakePayload.TYPE, (payload, context) -> {
+            UUID uuid = context.player().getUUID();
+            int accepted = payload.capabilities() & serverCapabilities();
+            context.server().execute(() -> PlayerTracker.getInstance().setCapabilities(uuid, accepted));
+        });
+
+        // regions whose digest matches ours are already on the client and skip the initial sync
+        ServerPlayNetworking.registerGlobalReceiver(LODSummaryPayload.TYPE, (payload, context) -> {
+            ServerPlayer player = context.player();
+            context.server().execute(() -> handleSummary(player, payload));
+        });
+        
+        // the queue is synchronized, so credits apply right away instead of waiting for the next tick
+        ServerPlayNetworking.registerGlobalReceiver(LODCreditPayload.TYPE, (payload, context) -> {
+            LODSendQueue queue = PlayerTracker.getInstance().getSendQueue(context.player().getUUID());
+            if (queue != null) queue.onCredit(payload.ingested(), payload.window());
+        });
+        
+        // validated against rate and distance limits, the worker picks accepted areas up on its next pass
+        ServerPlayNetworking.registerGlobalReceiver(LODRequestPayload.TYPE, (payload, context) -> {
+            ServerPlayer player = context.player();
+            context.server().execute(() -> {
+                if (!PlayerTracker.getInstance().hasCapability(player.getUUID(), CAP_REQUEST)) return;
+                LODRequests.getInstance().submit(player, payload.dimension(), payload.minX(), payload.minZ(), payload.maxX(), payload.maxZ(), payload.priority());
+            });
+        });
         
         VoxyWorldGenV2.LOGGER.info("voxy networking initialized");
     }
 
-    public static void broadcastLODData(LevelChunk chunk) {
+    public static int serverCapabilities() {
+        return (Config.DATA.compressLodData ? CAP_COMPRESSION : 0) | CAP_BATCH | CAP_RESYNC | CAP_DOWNSAMPLE | CAP_CREDIT | CAP_REQUEST;
+    }
+
+    private static void handleSummary(ServerPlayer player, LODSummaryPayload payload) {
+        UUID uuid = player.getUUID();
+        PlayerTracker tracker = PlayerTracker.getInstance();
+        if (!tracker.hasCapability(uuid, CAP_RESYNC)) return;
+
+        var synced = tracker.getSyncedChunks(uuid);
+        if (synced == null || !player.level().dimension().equals(payload.dimension())) return;
+        // the summary can beat the movement scan to a new dimension
+        if (synced.setDimension(payload.dimension())) tracker.openResync(uuid);
+
+        // anything outside the open window, or past its region budget, is ignored
+        int allowed = tracker.claimResyncRegions(uuid, payload.regions().size());
+        if (allowed > 0) {
+            ChunkHashStore hashes = ChunkHashStore.getInstance();
+            int matchedRegions = 0;
+            int matchedChunks = 0;
+            for (int i = 0; i < allowed; i++) {
+                LODSummaryPayload.RegionSummary region = payload.regions().get(i);
+                int matched = hashes.matchRegion(payload.dimension(), region.region(), region.digest(), region.count(), synced);
+                if (matched > 0) {
+                    matchedRegions++;
+                    matchedChunks += matched;
+                }
+            }
+            STATS.recordResync(allowed, matchedRegions, matchedChunks);
+        }
+        if (payload.last()) tracker.finishResync(uuid);
+    }
+
+    public static NetworkStats getStats() {
+        return STATS;
+    }
+
+    public static PalettedContainerFactory factoryFor(RegistryAccess registryAccess) {
+        synchronized (factories) {
+            return factories.computeIfAbsent(registryAccess, PalettedContainerFactory::create);
+        }
+    }
+
+    public static LODDataPayload getOrEncode(LevelChunk chunk) {
+        long version = ChunkUpdateTracker.getInstance().getVersion(chunk.getLevel().dimension(), chunk.getPos().toLong());
+        return getOrEncode(chunk.getLevel(), chunk.getPos(), version, () -> encodeRaw(chunk, ALL_SECTIONS, false));
+    }
+
+    // same as above from a copy taken on the server thread, safe to call from any thread
+    // null when the chunk was edited after the snapshot, see isStale
+    public static LODDataPayload getOrEncode(ChunkSnapshot snapshot) {
+        LODDataPayload payload = getOrEncode(snapshot.level(), snapshot.pos(), snapshot.version(), () -> encodeRaw(snapshot));
+        if (payload == null || !isStale(snapshot)) return payload;
+        // an edit landed while we encoded, its invalidation may have run before our writes did, so undo them
+        ResourceKey<Level> dimension = snapshot.level().dimension();
+        long posLong = snapshot.pos().toLong();
+        LODPayloadCache.getInstance().invalidate(dimension, posLong);
+        ChunkHashStore.getInstance().invalidate(dimension, posLong);
+        LODStore.getInstance().invalidate(snapshot.level(), snapshot.pos());
+        return null;
+    }
+
+    // the chunk changed since the snapshot was taken, its copy must not be cached or sent
+    public static boolean isStale(ChunkSnapshot snapshot) {
+        return ChunkUpdateTracker.getInstance().getVersion(snapshot.level().dimension(), snapshot.pos().toLong()) != snapshot.version();
+    }
+
+    // version is read by the caller from the same state the encoder reads, so a payload is never cached under a newer one
+    private static LODDataPayload getOrEncode(Level level, ChunkPos pos, long version, java.util.function.Supplier<LODDataPayload> encoder) {
+        ResourceKey<Level> dimension = level.dimension();
+        long posLong = pos.toLong();
+
+        LODPayloadCache cache = LODPayloadCache.getInstance();
+        LODDataPayload payload = cache.get(dimension, posLong, 0, version);
+        if (payload == null) {
+            long start = System.nanoTime();
+            LODDataPayload raw = encoder.get();
+            if (raw != null) {
+                // clients compare against this hash of the uncompressed body on reconnect
+                ChunkHashStore.getInstance().put(dimension, posLong, LODHashes.hash(raw.body()));
+                payload = pack(raw, dimension);
+                STATS.recordEncode(System.nanoTime() - start, payload.rawLength(), payload.body().length);
+                cache.put(dimension, posLong, 0, version, payload);
+                if (Config.DATA.lodStoreEnabled && level instanceof ServerLevel serverLevel) {
+                    LODStore.getInstance().write(serverLevel, pos, payload);
+                }
+            }
+        }
+        return payload;
+    }
+
+    // memory cache first, then the on-disk store, without touching the chunk itself
+    public static LODDataPayload getStored(ServerLevel level, ChunkPos pos) {
+        ResourceKey<Level> dimension = level.dimension();
+        long posLong = pos.toLong();
+        long version = ChunkUpdateTracker.getInstance().getVersion(dimension, posLong);
+
+        LODDataPayload payload = LODPayloadCache.getInstance().get(dimension, posLong, 0, version);
+        if (payload == null && Config.DATA.lodStoreEnabled) {
+            payload = LODStore.getInstance().read(level, pos);
+            if (payload == null) return null;
+            // edits hide the stored record before bumping the version, so one that raced the read shows up here
+            if (ChunkUpdateTracker.getInstance().getVersion(dimension, posLong) != version) return null;
+            LODPayloadCache.getInstance().put(dimension, posLong, 0, version, payload);
+        }
+        return payload;
+    }
+
+    private static LODDataPayload encodeRaw(LevelChunk chunk, long sectionMask, boolean includeEmpty) {
         ChunkPos pos = chunk.getPos();
         int minY = chunk.getMinSectionY();
-        List<LODDataPayload.SectionData> sections = new ArrayList<>();
-        
         var lightEngine = chunk.getLevel().getLightEngine();
-        
-        for (int i = 0; i < chunk.getSections().length; i++) {
-            LevelChunkSection section = chunk.getSections()[i];
-            if (section == null || section.hasOnlyAir()) continue;
-            
-            // serialize section
-            io.netty.buffer.ByteBuf statesRaw = io.netty.buffer.Unpooled.buffer();
-            io.netty.buffer.ByteBuf biomesRaw = io.netty.buffer.Unpooled.buffer();
-            byte[] states, biomes;
-            try {
-                RegistryFriendlyByteBuf statesBuf = new RegistryFriendlyByteBuf(new FriendlyByteBuf(statesRaw), chunk.getLevel().registryAccess());
-                section.getStates().write(statesBuf);
-                states = new byte[statesBuf.readableBytes()];
-                statesBuf.readBytes(states);
-                
-                RegistryFriendlyByteBuf biomesBuf = new RegistryFriendlyByteBuf(new FriendlyByteBuf(biomesRaw), chunk.getLevel().registryAccess());
-                section.getBiomes().write(biomesBuf);
-                biomes = new byte[biomesBuf.readableBytes()];
-                biomesBuf.readBytes(biomes);
-            } finally {
-                statesRaw.release();
-                biomesRaw.release();
+        // layers are encoded straight into the body, no need to copy them
+        return encodeSections(pos, minY, chunk.getSections(),
+            i -> lightEngine.getLayerListener(LightLayer.BLOCK).getDataLayerData(SectionPos.of(pos, minY + i)),
+            i -> lightEngine.getLayerListener(LightLayer.SKY).getDataLayerData(SectionPos.of(pos, minY + i)),
+            chunk.getLevel().registryAccess(), sectionMask, includeEmpty);
+    }
+
+    private static LODDataPayload encodeRaw(ChunkSnapshot snapshot) {
+        LevelChunkSection[] sections = new LevelChunkSection[snapshot.sectionCount()];
+        for (int i = 0; i < sections.length; i++) sections[i] = snapshot.section(i);
+        return encodeSections(snapshot.pos(), snapshot.minSectionY(), sections,
+            snapshot::blockLight, snapshot::skyLight,
+            snapshot.level().registryAccess(), ALL_SECTIONS, false);
+    }
+
+    // sections go straight into one pooled buffer, the only copy is the final body array we cache and share
+    private static LODDataPayload encodeSections(ChunkPos pos, int minY, LevelChunkSection[] sections,
+                                                 java.util.function.IntFunction<DataLayer> blockLight, java.util.function.IntFunction<DataLayer> skyLight,
+                                                 RegistryAccess registryAccess, long sectionMask, boolean includeEmpty) {
+        int count = 0;
+        for (int i = 0; i < sections.length; i++) {
+            if (includeSection(sections[i], i, sectionMask, includeEmpty)) count++;
+        }
+        if (count == 0) return null;
+
+        io.netty.buffer.ByteBuf raw = io.netty.buffer.PooledByteBufAllocator.DEFAULT.buffer(count * 2048);
+        try {
+            RegistryFriendlyByteBuf buf = new RegistryFriendlyByteBuf(raw, registryAccess);
+            buf.writeVarInt(count);
+            for (int i = 0; i < sections.length; i++) {
+                LevelChunkSection section = sections[i];
+                if (!includeSection(section, i, sectionMask, includeEmpty)) continue;
+
+                buf.writeInt(minY + i);
+                section.getStates().write(buf);
+                section.getBiomes().write(buf);
+                LODLightCodec.write(buf, blockLight.apply(i));
+                LODLightCodec.write(buf, skyLight.apply(i));
             }
-            
-            // light
-            SectionPos sectionPos = SectionPos.of(pos, minY + i);
-            DataLayer bl = lightEngine.getLayerListener(LightLayer.BLOCK).getDataLayerData(sectionPos);
-            DataLayer sl = lightEngine.getLayerListener(LightLayer.SKY).getDataLayerData(sectionPos);
-            
-            sections.add(new LODDataPayload.SectionData(
-                minY + i, 
-                states, 
-                biomes, 
-                bl != null ? bl.getData().clone() : null, 
-                sl != null ? sl.getData().clone() : null
-            ));
+
+            byte[] body = new byte[buf.readableBytes()];
+            buf.readBytes(body);
+            return new LODDataPayload(pos, minY, (byte) 0, LODCompression.CODEC_RAW, body.length, body);
+        } finally {
+            raw.release();
         }
+    }
+
+    private static boolean includeSection(LevelChunkSection section, int index, long sectionMask, boolean includeEmpty) {
+        if (!ChunkUpdateTracker.isSectionMarked(sectionMask, index)) return false;
+        return section != null && (includeEmpty || !section.hasOnlyAir());
+    }
+
+    // far chunks go out downsampled to clients that can expand them, each scale cached like the full body
+    public static LODDataPayload forDistance(ServerPlayer player, ServerLevel level, LODDataPayload payload) {
+        int scale = scaleFor(player, payload);
+        if (scale == 0) return payload;
+        long version = ChunkUpdateTracker.getInstance().getVersion(level.dimension(), payload.pos().toLong());
+        LODDataPayload scaled = LODPayloadCache.getInstance().get(level.dimension(), payload.pos().toLong(), scale, version);
+        return scaled != null ? scaled : downsample(level, payload, scale, version);
+    }
+
+    // 0 when the player gets the full body
+    private static int scaleFor(ServerPlayer player, LODDataPayload payload) {
+        if (payload.scale() != 0 || !PlayerTracker.getInstance().hasCapability(player.getUUID(), CAP_DOWNSAMPLE)) return 0;
+        ChunkPos pos = payload.pos();
+        ChunkPos center = player.chunkPosition();
+        int scale = LODBands.scaleFor(pos.x, pos.z, center.x, center.z);
+        return LODRequests.getInstance().refineScale(player.getUUID(), player.level().dimension(), pos, scale);
+    }
+
+    // any thread, falls back to the full body if the downsample fails
+    private static LODDataPayload downsample(ServerLevel level, LODDataPayload payload, int scale, long version) {
+        ResourceKey<Level> dimension = level.dimension();
+        LODDataPayload scaled;
+        try {
+            scaled = pack(LODDownsampler.downsample(payload, scale, level.registryAccess()), dimension);
+        } catch (Exception e) {
+            VoxyWorldGenV2.LOGGER.error("failed to downsample LOD data for chunk " + payload.pos(), e);
+            return payload;
+        }
+        STATS.recordDownsample(payload.body().length, scaled.body().length);
+        LODPayloadCache.getInstance().put(dimension, payload.pos().toLong(), scale, version, scaled);
+        return scaled;
+    }
+
+    private static LODDataPayload pack(LODDataPayload payload, ResourceKey<Level> dimension) {
+        if (Config.DATA.compressLodData && payload.rawLength() >= Config.DATA.compressionThreshold) {
+            return payload.compress(LODCompression.codecFor(dimension), Config.DATA.compressionLevel);
+        }
+        return payload;
+    }
+
+    public static void broadcastLODData(LevelChunk chunk, long dirtySections) {
+        ChunkPos pos = chunk.getPos();
+        double maxDistSq = BROADCAST_RANGE_BLOCKS * BROADCAST_RANGE_BLOCKS;
+        LODDataPayload full = null;
+        LODDataPayload delta = null;
+        boolean fullEncoded = false;
+        boolean deltaEncoded = false;
         
-        if (sections.isEmpty()) return;
-        
-        LODDataPayload payload = new LODDataPayload(pos, minY, sections);
-        
-        double maxDistSq = 4096.0 * 4096.0;
-        
-        for (ServerPlayer player : PlayerTracker.getInstance().getPlayers()) {
+        var nearby = PlayerSpatialIndex.getInstance().getPlayersNear(chunk.getLevel().dimension(), pos, BROADCAST_RANGE_BLOCKS >> 4);
+        for (ServerPlayer player : nearby) {
             if (player.level() != chunk.getLevel()) continue;
             
             double dx = player.getX() - (pos.getMiddleBlockX());
             double dz = player.getZ() - (pos.getMiddleBlockZ());
-            if (dx * dx + dz * dz <= maxDistSq) {
-                ServerPlayNetworking.send(player, payload);
-                
-                // mark as synced for this player
-                var synced = PlayerTracker.getInstance().getSyncedChunks(player.getUUID());
-                if (synced != null) {
-                    synced.add(pos.toLong());
+            if (dx * dx + dz * dz > maxDistSq) continue;
+
+            var synced = PlayerTracker.getInstance().getSyncedChunks(player.getUUID());
+            if (synced != null && synced.contains(pos.toLong())) {
+                // player already has this chunk, only ship the sections that changed
+                if (!deltaEncoded) {
+                    delta = encodeRaw(chunk, dirtySections, true);
+                    if (delta != null) delta = pack(delta, chunk.getLevel().dimension());
+                    deltaEncoded = true;
+                }
+                if (delta != null) sendLODDelta(player, delta);
+            } else {
+                if (!fullEncoded) {
+                    full = getOrEncode(chunk);
+                    fullEncoded = true;
                 }
+                if (full != null) sendLODData(player, full);
             }
         }
     }
 
     public static void sendLODData(ServerPlayer player, LevelChunk chunk) {
-        ChunkPos pos = chunk.getPos();
-        int minY = chunk.getMinSectionY();
-        List<LODDataPayload.SectionData> sections = new ArrayList<>();
-        
-        var lightEngine = chunk.getLevel().getLightEngine();
-        
-        for (int i = 0; i < chunk.getSections().length; i++) {
-            LevelChunkSection section = chunk.getSections()[i];
-            if (section == null || section.hasOnlyAir()) continue;
-            
-            io.netty.buffer.ByteBuf statesRaw = io.netty.buffer.Unpooled.buffer();
-            io.netty.buffer.ByteBuf biomesRaw = io.netty.buffer.Unpooled.buffer();
-            byte[] states, biomes;
-            try {
-                RegistryFriendlyByteBuf statesBuf = new RegistryFriendlyByteBuf(new FriendlyByteBuf(statesRaw), chunk.getLevel().registryAccess());
-                section.getStates().write(statesBuf);
-                states = new byte[statesBuf.readableBytes()];
-                statesBuf.readBytes(states);
-                
-                RegistryFriendlyByteBuf biomesBuf = new RegistryFriendlyByteBuf(new FriendlyByteBuf(biomesRaw), chunk.getLevel().registryAccess());
-                section.getBiomes().write(biomesBuf);
-                biomes = new byte[biomesBuf.readableBytes()];
-                biomesBuf.readBytes(biomes);
-            } finally {
-                statesRaw.release();
-                biomesRaw.release();
+        LODDataPayload payload = getOrEncode(chunk);
+        if (payload != null) {
+            sendLODData(player, payload);
+        }
+    }
+
+    // server thread, a scale missing from the cache is downsampled on the ingest pool and queued once it is ready
+    public static void sendLODData(ServerPlayer player, LODDataPayload payload) {
+        int scale = scaleFor(player, payload);
+        if (scale != 0) {
+            ServerLevel level = (ServerLevel) player.level();
+            ResourceKey<Level> dimension = level.dimension();
+            long posLong = payload.pos().toLong();
+            long version = ChunkUpdateTracker.getInstance().getVersion(dimension, posLong);
+            LODDataPayload scaled = LODPayloadCache.getInstance().get(dimension, posLong, scale, version);
+            if (scaled == null) {
+                // mark now so sync does not pick the chunk again while it is being downsampled
+                var synced = PlayerTracker.getInstance().getSyncedChunks(player.getUUID());
+                if (synced != null) synced.add(posLong, scale);
+                UUID uuid = player.getUUID();
+                var server = level.getServer();
+                boolean queued = com.ethan.voxyworldgenv2.core.ChunkGenerationManager.getInstance().runOnIngestPool(() -> {
+                    LODDataPayload result = downsample(level, payload, scale, version);
+                    server.execute(() -> {
+                        ServerPlayer p = server.getPlayerList().getPlayer(uuid);
+                        if (p == null) return;
+                        // edited or left meanwhile, hand the chunk back to sync instead of sending an old copy
+                        if (p.level() != level || ChunkUpdateTracker.getInstance().getVersion(dimension, posLong) != version) {
+                            var current = PlayerTracker.getInstance().getSyncedChunks(uuid);
+                            if (current != null) current.remove(dimension, posLong);
+                            return;
+                        }
+                        queueFull(p, result);
+                    });
+                });
+                // the pool is busy or gone, hand the chunk back to sync rather than downsample here
+                if (!queued && synced != null) synced.remove(dimension, posLong);
+                return;
             }
-            
-            SectionPos sectionPos = SectionPos.of(pos, minY + i);
-            DataLayer bl = lightEngine.getLayerListener(LightLayer.BLOCK).getDataLayerData(sectionPos);
-            DataLayer sl = lightEngine.getLayerListener(LightLayer.SKY).getDataLayerData(sectionPos);
-            
-            sections.add(new LODDataPayload.SectionData(
-                minY + i, 
-                states, 
-                biomes, 
-                bl != null ? bl.getData().clone() : null, 
-                sl != null ? sl.getData().clone() : null
-            ));
+            queueFull(player, scaled);
+            return;
         }
-        
-        if (sections.isEmpty()) return;
-        
-        ServerPlayNetworking.send(player, new LODDataPayload(pos, minY, sections));
-        
+        queueFull(player, payload);
+    }
+
+    private static void queueFull(ServerPlayer player, LODDataPayload payload) {
+        LODDataPayload data = forPlayer(player, payload);
+        if (data == null) return;
+
+        // mark as synced for this player along with the scale it went out at, the queue un-marks it again if the entry gets dropped
         var synced = PlayerTracker.getInstance().getSyncedChunks(player.getUUID());
         if (synced != null) {
-            synced.add(pos.toLong());
+            synced.add(data.pos().toLong(), data.scale());
+        }
+        enqueue(player, data, data.pos(), data.body().length, true);
+    }
+
+    public static void sendLODDelta(ServerPlayer player, LODDataPayload payload) {
+        LODDataPayload data = forPlayer(player, payload);
+        if (data != null) {
+            enqueue(player, new LODDeltaPayload(data), data.pos(), data.body().length, false);
+        }
+    }
+
+    private static void enqueue(ServerPlayer player, CustomPacketPayload packet, ChunkPos pos, int bytes, boolean full) {
+        LODSendQueue queue = PlayerTracker.getInstance().getSendQueue(player.getUUID());
+        if (queue == null) {
+            ServerPlayNetworking.send(player, packet);
+            return;
+        }
+        queue.enqueue(player, packet, pos, bytes, full, PlayerTracker.getInstance().getSyncedChunks(player.getUUID()), requestedBy(player));
+    }
+
+    // requested areas are usually out of range, null when the player has none
+    private static java.util.function.LongPredicate requestedBy(ServerPlayer player) {
+        return LODRequests.getInstance().coverage(player.getUUID(), player.level().dimension());
+    }
+
+    public static void flushQueue(ServerPlayer player, int radiusChunks) {
+        LODSendQueue queue = PlayerTracker.getInstance().getSendQueue(player.getUUID());
+        if (queue != null) {
+            boolean batching = PlayerTracker.getInstance().hasCapability(player.getUUID(), CAP_BATCH);
+            boolean credited = PlayerTracker.getInstance().hasCapability(player.getUUID(), CAP_CREDIT);
+            // keep requested areas queued even out of range and send them first
+            queue.drain(player, radiusChunks, PlayerTracker.getInstance().getSyncedChunks(player.getUUID()), batching, credited, requestedBy(player));
+        }
+    }
+
+    // inflate compressed bodies for clients that did not negotiate compression
+    private static LODDataPayload forPlayer(ServerPlayer player, LODDataPayload payload) {
+        if (payload.isCompressed() && !PlayerTracker.getInstance().hasCapability(player.getUUID(), CAP_COMPRESSION)) {
+            try {
+                return payload.decompress();
+            } catch (java.io.IOException e) {
+                VoxyWorldGenV2.LOGGER.error("failed to unpack LOD data for chunk " + payload.pos(), e);
+                return null;
+            }
         }
+        return payload;
     }
 
     public static void sendHandshake(ServerPlayer player) {
-        ServerPlayNetworking.send(player, new HandshakePayload(true));
+        ServerPlayNetworking.send(player, new HandshakePayload(true, serverCapabilities()));
     }
 }
@@ -6,6 +6,12 @@ public class NetworkState {
     private static boolean serverConnected = false;
     private static final AtomicLong chunksReceived = new AtomicLong(0);
     private static final AtomicLong bytesReceived = new AtomicLong(0);
+    private static final AtomicLong chunksDecoded = new AtomicLong(0);
+    private static final AtomicLong decodeNanos = new AtomicLong(0);
+    private static final AtomicLong rawBytesDecoded = new AtomicLong(0);
+    private static final AtomicLong wireBytesDecoded = new AtomicLong(0);
+    
+    private static volatile double ingestLatencyMs = 0; // moving average, receive to voxy ingest
     
     private static double receiveRate = 0; // chunks/s
     private static double bandwidthRate = 0; // bytes/s
@@ -19,6 +25,11 @@ public class NetworkState {
         if (!connected) {
             chunksReceived.set(0);
             bytesReceived.set(0);
+            chunksDecoded.set(0);
+            decodeNanos.set(0);
+            rawBytesDecoded.set(0);
+            wireBytesDecoded.set(0);
+            ingestLatencyMs = 0;
             receiveRate = 0;
             bandwidthRate = 0;
             lastUpdateTime = 0;
@@ -36,6 +47,19 @@ public class NetworkState {
         bytesReceived.addAndGet(bytes);
     }
 
+    public static void recordDecode(long nanos, long rawBytes, long wireBytes) {
+        chunksDecoded.incrementAndGet();
+        decodeNanos.addAndGet(nanos);
+        rawBytesDecoded.addAndGet(rawBytes);
+        wireBytesDecoded.addAndGet(wireBytes);
+    }
+
+    public static void recordIngestLatency(long nanos) {
+        double ms = nanos / 1_000_000.0;
+        double current = ingestLatencyMs;
+        ingestLatencyMs = current == 0 ? ms : current * 0.9 + ms * 0.1;
+    }
+
     public static void tick() {
         long now = System.currentTimeMillis();
         if (lastUpdateTime == 0) {
@@ -75,4 +99,18 @@ public class NetworkState {
     public static long getBytesReceived() {
         return bytesReceived.get();
     }
+
+    public static double getAverageDecodeMicros() {
+        long count = chunksDecoded.get();
+        return count == 0 ? 0 : decodeNanos.get() / 1000.0 / count;
+    }
+
+    public static double getCompressionRatio() {
+        long wire = wireBytesDecoded.get();
+        return wire == 0 ? 1.0 : (double) rawBytesDecoded.get() / wire;
+    }
+
+    public static double getIngestLatencyMs() {
+        return ingestLatencyMs;
+    }
 }
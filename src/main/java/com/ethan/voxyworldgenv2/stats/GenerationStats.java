@@ -7,6 +7,9 @@ public class GenerationStats {
     private final AtomicLong chunksCompleted = new AtomicLong(0);
     private final AtomicLong chunksFailed = new AtomicLong(0);
     private final AtomicLong chunksSkipped = new AtomicLong(0);
+    // server thread time spent per generated chunk once it is loaded, before handing it off
+    private final AtomicLong completionNanos = new AtomicLong(0);
+    private final AtomicLong completions = new AtomicLong(0);
     
     // rolling average over 10s
     private final long[] rollingHistory = new long[10];
@@ -18,11 +21,21 @@ public class GenerationStats {
     public void incrementCompleted() { chunksCompleted.incrementAndGet(); }
     public void incrementFailed() { chunksFailed.incrementAndGet(); }
     public void incrementSkipped() { chunksSkipped.incrementAndGet(); }
+    public void recordCompletion(long nanos) {
+        completionNanos.addAndGet(nanos);
+        completions.incrementAndGet();
+    }
     
     public long getQueued() { return chunksQueued.get(); }
     public long getCompleted() { return chunksCompleted.get(); }
     public long getFailed() { return chunksFailed.get(); }
     public long getSkipped() { return chunksSkipped.get(); }
+    public long getCompletions() { return completions.get(); }
+
+    public double getAverageCompletionMicros() {
+        long n = completions.get();
+        return n == 0 ? 0 : completionNanos.get() / 1000.0 / n;
+    }
     
     // update rolling average, call every tick
     public synchronized void tick() {
@@ -66,6 +79,8 @@ public class GenerationStats {
         chunksCompleted.set(0);
         chunksFailed.set(0);
         chunksSkipped.set(0);
+        completionNanos.set(0);
+        completions.set(0);
         synchronized (this) {
             for (int i = 0; i < rollingHistory.length; i++) rollingHistory[i] = 0;
             lastCompletedCount = 0;
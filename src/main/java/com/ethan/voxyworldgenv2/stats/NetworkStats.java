@@ -0,0 +1,98 @@
+package com.ethan.voxyworldgenv2.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class NetworkStats {
+    private final AtomicLong chunksEncoded = new AtomicLong(0);
+    private final AtomicLong encodeNanos = new AtomicLong(0);
+    private final AtomicLong rawBytes = new AtomicLong(0);
+    private final AtomicLong wireBytes = new AtomicLong(0);
+    private final AtomicLong resyncRegions = new AtomicLong(0);
+    private final AtomicLong resyncRegionsMatched = new AtomicLong(0);
+    private final AtomicLong resyncChunksSkipped = new AtomicLong(0);
+    private final AtomicLong chunksDownsampled = new AtomicLong(0);
+    private final AtomicLong downsampleFullBytes = new AtomicLong(0);
+    private final AtomicLong downsampleBytes = new AtomicLong(0);
+    private final AtomicLong snapshots = new AtomicLong(0);
+    private final AtomicLong snapshotNanos = new AtomicLong(0);
+    private final AtomicLong snapshotBytes = new AtomicLong(0);
+
+    public void recordEncode(long nanos, long raw, long wire) {
+        chunksEncoded.incrementAndGet();
+        encodeNanos.addAndGet(nanos);
+        rawBytes.addAndGet(raw);
+        wireBytes.addAndGet(wire);
+    }
+
+    public void recordResync(long regions, long matched, long chunks) {
+        resyncRegions.addAndGet(regions);
+        resyncRegionsMatched.addAndGet(matched);
+        resyncChunksSkipped.addAndGet(chunks);
+    }
+
+    // wire size of the full body the downsampled one replaced, to see what the bands save
+    public void recordDownsample(long fullWire, long wire) {
+        chunksDownsampled.incrementAndGet();
+        downsampleFullBytes.addAndGet(fullWire);
+        downsampleBytes.addAndGet(wire);
+    }
+
+    // server thread time and heap for one chunk snapshot
+    public void recordSnapshot(long nanos, long bytes) {
+        snapshots.incrementAndGet();
+        snapshotNanos.addAndGet(nanos);
+        snapshotBytes.addAndGet(bytes);
+    }
+
+    public long getChunksEncoded() { return chunksEncoded.get(); }
+    public long getRawBytes() { return rawBytes.get(); }
+    public long getWireBytes() { return wireBytes.get(); }
+    public long getResyncRegions() { return resyncRegions.get(); }
+    public long getResyncRegionsMatched() { return resyncRegionsMatched.get(); }
+    public long getResyncChunksSkipped() { return resyncChunksSkipped.get(); }
+    public long getChunksDownsampled() { return chunksDownsampled.get(); }
+    public long getSnapshots() { return snapshots.get(); }
+
+    public double getAverageSnapshotMicros() {
+        long count = snapshots.get();
+        return count == 0 ? 0 : snapshotNanos.get() / 1000.0 / count;
+    }
+
+    public double getAverageSnapshotBytes() {
+        long count = snapshots.get();
+        return count == 0 ? 0 : (double) snapshotBytes.get() / count;
+    }
+
+    // full size over downsampled size, 1.0 before anything was downsampled
+    public double getDownsampleRatio() {
+        long wire = downsampleBytes.get();
+        return wire == 0 ? 1.0 : (double) downsampleFullBytes.get() / wire;
+    }
+
+    public double getAverageEncodeMicros() {
+        long count = chunksEncoded.get();
+        return count == 0 ? 0 : encodeNanos.get() / 1000.0 / count;
+    }
+
+    // raw size over encoded size, 1.0 when nothing is compressed
+    public double getCompressionRatio() {
+        long wire = wireBytes.get();
+        return wire == 0 ? 1.0 : (double) rawBytes.get() / wire;
+    }
+
+    public void reset() {
+        chunksEncoded.set(0);
+        encodeNanos.set(0);
+        rawBytes.set(0);
+        wireBytes.set(0);
+        resyncRegions.set(0);
+        resyncRegionsMatched.set(0);
+        resyncChunksSkipped.set(0);
+        chunksDownsampled.set(0);
+        downsampleFullBytes.set(0);
+        downsampleBytes.set(0);
+        snapshots.set(0);
+        snapshotNanos.set(0);
+        snapshotBytes.set(0);
+    }
+}